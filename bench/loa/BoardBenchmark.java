@@ -0,0 +1,160 @@
+package loa;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static loa.Piece.*;
+
+/** Benchmarks of the basic Board operations, each timed per position
+ *  over a corpus of midgame positions.
+ *  @author Maaz Uddin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    /** Build the corpus and the legal moves from each position. */
+    @Setup
+    public void setup() {
+        _positions = Positions.midgame(SEED);
+        _moves = new Move[Positions.COUNT][];
+        _names = new String[Positions.COUNT][];
+        for (int i = 0; i < Positions.COUNT; i += 1) {
+            ArrayList<Move> moves = new ArrayList<>();
+            for (Move move : _positions[i]) {
+                moves.add(move);
+            }
+            _moves[i] = moves.toArray(new Move[moves.size()]);
+            _names[i] = new String[moves.size()];
+            for (int k = 0; k < moves.size(); k += 1) {
+                _names[i][k] = moves.get(k).toString();
+            }
+        }
+    }
+
+    /** Enumerate all legal moves through Board.legalMoves(), consuming
+     *  them in BH. */
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public void legalMoves(Blackhole bh) {
+        for (Board board : _positions) {
+            for (Iterator<Move> iter = board.legalMoves(); iter.hasNext();) {
+                bh.consume(iter.next());
+            }
+        }
+    }
+
+    /** Generate all legal moves with Board.generateMoves, consuming the
+     *  counts in BH. */
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public void generateMoves(Blackhole bh) {
+        for (Board board : _positions) {
+            bh.consume(board.generateMoves(_buffer));
+        }
+    }
+
+    /** Check the legality of every legal move, consuming the results in
+     *  BH. */
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public void isLegal(Blackhole bh) {
+        for (int i = 0; i < Positions.COUNT; i += 1) {
+            Board board = _positions[i];
+            for (Move move : _moves[i]) {
+                bh.consume(board.isLegal(move));
+            }
+        }
+    }
+
+    /** Parse the printed form of every legal move, as typed by a user,
+     *  consuming the moves in BH. */
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public void parseMoves(Blackhole bh) {
+        for (int i = 0; i < Positions.COUNT; i += 1) {
+            Board board = _positions[i];
+            for (String name : _names[i]) {
+                bh.consume(Move.create(name, board));
+            }
+        }
+    }
+
+    /** Test connectivity of both sides, consuming the results in BH. */
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public void piecesContiguous(Blackhole bh) {
+        for (Board board : _positions) {
+            bh.consume(board.piecesContiguous(BP));
+            bh.consume(board.piecesContiguous(WP));
+        }
+    }
+
+    /** Make and retract every legal move, consuming the resulting keys in
+     *  BH. */
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public void makeMoveRetract(Blackhole bh) {
+        for (int i = 0; i < Positions.COUNT; i += 1) {
+            Board board = _positions[i];
+            for (Move move : _moves[i]) {
+                board.makeMove(move);
+                bh.consume(board.zobristKey());
+                board.retract();
+            }
+        }
+    }
+
+    /** Copy each position, consuming the copies' keys in BH. */
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public void copyFrom(Blackhole bh) {
+        for (Board board : _positions) {
+            _scratch.copyFrom(board);
+            bh.consume(_scratch.zobristKey());
+        }
+    }
+
+    /** Restore a snapshot of each position, consuming the restored
+     *  boards' keys in BH. */
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public void snapshotRestore(Blackhole bh) {
+        for (Board board : _positions) {
+            _scratch.restore(board.snapshot());
+            bh.consume(_scratch.zobristKey());
+        }
+    }
+
+    /** Seed of the position corpus. */
+    static final long SEED = 20261018L;
+
+    /** The position corpus. */
+    private Board[] _positions;
+    /** _moves[i] is the legal moves from _positions[i]. */
+    private Move[][] _moves;
+    /** _names[i] is the printed forms of _moves[i]. */
+    private String[][] _names;
+    /** Move buffer for generateMoves. */
+    private final int[] _buffer = new int[Board.MAX_MOVES];
+    /** Target of copyFrom. */
+    private final Board _scratch = new Board();
+}
@@ -0,0 +1,82 @@
+package loa;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks of position evaluation and of complete AI moves searched
+ *  to fixed depths, over a corpus of midgame positions.
+ *  @author Maaz Uddin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MachinePlayerBenchmark {
+
+    /** Search depth of makeMove. */
+    @Param({ "1", "2", "3", "4" })
+    public int depth;
+
+    /** Build the corpus and a game to search in. */
+    @Setup
+    public void setup() {
+        _positions = Positions.midgame(BoardBenchmark.SEED);
+        _game = new Game();
+        _game.setHashSize(HASH_SIZE);
+        _game.setSearchDepth(depth);
+    }
+
+    /** Set up the next corpus position for makeMove, with an empty
+     *  transposition table and a fresh player. */
+    @Setup(Level.Invocation)
+    public void nextPosition() {
+        Board position = _positions[_next];
+        _next = (_next + 1) % Positions.COUNT;
+        _game.getBoard().copyFrom(position);
+        _game.transpositionTable().clear();
+        _player = new MachinePlayer(position.turn(), _game);
+    }
+
+    /** Evaluate each position, consuming the values in BH. */
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public void eval(Blackhole bh) {
+        for (Board board : _positions) {
+            bh.consume(Evaluator.eval(board));
+        }
+    }
+
+    /** Choose a move in the current position, consuming it in BH. */
+    @Benchmark
+    public void makeMove(Blackhole bh) {
+        bh.consume(_player.makeMove());
+    }
+
+    /** Transposition table size, in megabytes. */
+    static final int HASH_SIZE = 4;
+
+    /** The position corpus. */
+    private Board[] _positions;
+    /** Index in _positions of the next position for makeMove. */
+    private int _next;
+    /** The game whose board makeMove searches. */
+    private Game _game;
+    /** The player whose move makeMove times. */
+    private MachinePlayer _player;
+}
@@ -0,0 +1,43 @@
+package loa;
+
+import java.util.Random;
+
+/** A reproducible corpus of midgame positions for benchmarks.
+ *  @author Maaz Uddin
+ */
+class Positions {
+
+    /** Number of positions in a corpus. */
+    static final int COUNT = 32;
+
+    /** Fewest and most moves played to reach a corpus position. */
+    static final int MIN_PLY = 12, MAX_PLY = 32;
+
+    /** Return COUNT positions, each reached by playing between MIN_PLY and
+     *  MAX_PLY random legal moves from the initial position, in which
+     *  neither side has won.  The same SEED always gives the same
+     *  positions. */
+    static Board[] midgame(long seed) {
+        Random random = new Random(seed);
+        Board[] result = new Board[COUNT];
+        int[] moves = new int[Board.MAX_MOVES];
+        for (int i = 0; i < COUNT; i += 1) {
+            Board board = new Board();
+            int plies = MIN_PLY + random.nextInt(MAX_PLY - MIN_PLY + 1);
+            while (board.movesMade() < plies) {
+                int count = board.generateMoves(moves);
+                if (count == 0 || board.gameOver()) {
+                    board.clear();
+                    continue;
+                }
+                board.makeMove(Move.fromPacked(moves[random.nextInt(count)]));
+            }
+            if (board.gameOver()) {
+                i -= 1;
+            } else {
+                result[i] = board;
+            }
+        }
+        return result;
+    }
+}
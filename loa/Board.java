@@ -1,11 +1,11 @@
 package loa;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Formatter;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-import java.util.regex.Pattern;
-import java.util.HashSet;
+import java.util.Random;
 
 import static loa.Piece.*;
 import static loa.Direction.*;
@@ -18,8 +18,13 @@ class Board implements Iterable<Move> {
     /** Size of a board. */
     static final int M = 8;
 
-    /** Pattern describing a valid square designator (cr). */
-    static final Pattern ROW_COL = Pattern.compile("^[a-h][1-8]$");
+    /** Number of squares on a board. */
+    static final int SQUARES = M * M;
+
+    /** A bound on the number of legal moves in any position: one in each
+     *  of 8 directions from each square.  (Positions set up by hand may
+     *  have many more than the 12 pieces a side starts with.) */
+    static final int MAX_MOVES = 8 * SQUARES;
 
     /** A Board whose initial contents are taken from INITIALCONTENTS
      *  and in which the player playing TURN is to move. The resulting
@@ -47,8 +52,7 @@ class Board implements Iterable<Move> {
 
     /** Set my state to CONTENTS with SIDE to move. */
     void initialize(Piece[][] contents, Piece side) {
-        _moves.clear();
-
+        empty();
         for (int r = 1; r <= M; r += 1) {
             for (int c = 1; c <= M; c += 1) {
                 set(c, r, contents[r - 1][c - 1]);
@@ -62,27 +66,132 @@ class Board implements Iterable<Move> {
         initialize(INITIAL_PIECES, BP);
     }
 
-    /** Set my state to a copy of BOARD. */
+    /** Remove all pieces, moves and history. */
+    private void empty() {
+        _moves.clear();
+        clearHistory();
+        _black = _white = 0L;
+        _key = 0L;
+        Arrays.fill(_colCount, 0);
+        Arrays.fill(_rowCount, 0);
+        Arrays.fill(_diagCount, 0);
+        Arrays.fill(_antiCount, 0);
+        Arrays.fill(_columnSum, 0);
+        Arrays.fill(_rowSum, 0);
+        Arrays.fill(_squareValueSum, 0);
+    }
+
+    /** Return the position on this board, without the moves that led to
+     *  it, in a compact form accepted by restore. */
+    Snapshot snapshot() {
+        return new Snapshot(_black, _white, _turn);
+    }
+
+    /** Set my state to the position SNAPSHOT, with no moves made.  Takes
+     *  time proportional to the number of pieces, however long the game
+     *  that produced SNAPSHOT. */
+    void restore(Snapshot snapshot) {
+        empty();
+        for (long rest = snapshot._black; rest != 0; rest &= rest - 1) {
+            addPiece(BP, lowestSquare(rest));
+        }
+        for (long rest = snapshot._white; rest != 0; rest &= rest - 1) {
+            addPiece(WP, lowestSquare(rest));
+        }
+        _turn = snapshot._turn;
+    }
+
+    /** Set my state to the position on BOARD with no moves made, as for
+     *  restore(BOARD.snapshot()), but remembering the positions that
+     *  preceded it on BOARD, so that repeated() detects returns to
+     *  them. */
+    void restore(Board board) {
+        assert board != this;
+        restore(board.snapshot());
+        for (int i = 0; i < board._historySize; i += 1) {
+            pushHistory(board._history[i]);
+        }
+    }
+
+    /** Set my state to a copy of BOARD, including the moves that led to
+     *  its position, which may be retracted.  Where those are not needed,
+     *  restore(BOARD.snapshot()) is cheaper. */
     void copyFrom(Board board) {
         if (board == this) {
             return;
         }
         _moves.clear();
         _moves.addAll(board._moves);
-        _turn = board._turn;
-
-        for (int c = 1; c <= M; c++) {
-            for (int r = 1; r <= M; r++) {
-                set(c, r, board.get(c, r), _turn);
-            }
+        clearHistory();
+        for (int i = 0; i < board._historySize; i += 1) {
+            pushHistory(board._history[i]);
         }
+        _turn = board._turn;
+        _black = board._black;
+        _white = board._white;
+        _key = board._key;
+        System.arraycopy(board._colCount, 0, _colCount, 0, M);
+        System.arraycopy(board._rowCount, 0, _rowCount, 0, M);
+        System.arraycopy(board._diagCount, 0, _diagCount, 0, 2 * M - 1);
+        System.arraycopy(board._antiCount, 0, _antiCount, 0, 2 * M - 1);
+        System.arraycopy(board._columnSum, 0, _columnSum, 0, 2);
+        System.arraycopy(board._rowSum, 0, _rowSum, 0, 2);
+        System.arraycopy(board._squareValueSum, 0, _squareValueSum, 0, 2);
     }
 
     /** Return the contents of column C, row R, where 1 <= C,R <= 8,
      *  where column 1 corresponds to column 'a' in the standard
      *  notation. */
     Piece get(int c, int r) {
-        return _currentState[r - 1][c - 1];
+        return get(sq(c, r));
+    }
+
+    /** Return the contents of square index SQ (as for sq). */
+    Piece get(int sq) {
+        long bit = 1L << sq;
+        if ((_black & bit) != 0) {
+            return BP;
+        } else if ((_white & bit) != 0) {
+            return WP;
+        }
+        return EMP;
+    }
+
+    /** Return the square index, 0 <= index < SQUARES, of column C and
+     *  row R, 1 <= C,R <= M.  Square a1 is 0, h1 is 7 and h8 is 63. */
+    static int sq(int c, int r) {
+        return (r - 1) * M + c - 1;
+    }
+
+    /** Return the square index of the square designator (as for
+     *  {@link get(String)}) at position K of S, or -1 if there is none
+     *  there. */
+    static int sq(String s, int k) {
+        if (k + 2 > s.length()) {
+            return -1;
+        }
+        int c = s.charAt(k) - 'a' + 1, r = s.charAt(k + 1) - '0';
+        return c < 1 || c > M || r < 1 || r > M ? -1 : sq(c, r);
+    }
+
+    /** Return the column (1-8) of square index SQ. */
+    static int col(int sq) {
+        return sq % M + 1;
+    }
+
+    /** Return the row (1-8) of square index SQ. */
+    static int row(int sq) {
+        return sq / M + 1;
+    }
+
+    /** Return the mask of squares occupied by SIDE (BP or WP). */
+    long pieces(Piece side) {
+        return side == BP ? _black : _white;
+    }
+
+    /** Return the mask of all occupied squares. */
+    long occupied() {
+        return _black | _white;
     }
 
     /** Return the contents of the square SQ.  SQ must be the
@@ -95,7 +204,7 @@ class Board implements Iterable<Move> {
     /** Return the column number (a value in the range 1-8) for SQ.
      *  SQ is as for {@link get(String)}. */
     static int col(String sq) {
-        if (!ROW_COL.matcher(sq).matches()) {
+        if (sq.length() != 2 || sq(sq, 0) < 0) {
             throw new IllegalArgumentException("bad square designator");
         }
         return sq.charAt(0) - 'a' + 1;
@@ -104,7 +213,7 @@ class Board implements Iterable<Move> {
     /** Return the row number (a value in the range 1-8) for SQ.
      *  SQ is as for {@link get(String)}. */
     static int row(String sq) {
-        if (!ROW_COL.matcher(sq).matches()) {
+        if (sq.length() != 2 || sq(sq, 0) < 0) {
             throw new IllegalArgumentException("bad square designator");
         }
         return sq.charAt(1) - '0';
@@ -113,7 +222,14 @@ class Board implements Iterable<Move> {
     /** Set the square at column C, row R to V, and make NEXT the next side
      *  to move, if it is not null. */
     void set(int c, int r, Piece v, Piece next) {
-        _currentState[r - 1][c - 1] = v;
+        int sq = sq(c, r);
+        Piece old = get(sq);
+        if (old != EMP) {
+            removePiece(old, sq);
+        }
+        if (v != EMP) {
+            addPiece(v, sq);
+        }
         if (next != null) {
             _turn = next;
         }
@@ -128,14 +244,15 @@ class Board implements Iterable<Move> {
     void makeMove(Move move) {
         assert isLegal(move);
         _moves.add(move);
-        Piece replaced = move.replacedPiece();
-        int c0 = move.getCol0(), c1 = move.getCol1();
-        int r0 = move.getRow0(), r1 = move.getRow1();
+        pushHistory(zobristKey());
+        Piece moved = move.movedPiece(), replaced = move.replacedPiece();
+        int sq0 = sq(move.getCol0(), move.getRow0());
+        int sq1 = sq(move.getCol1(), move.getRow1());
+        removePiece(moved, sq0);
         if (replaced != EMP) {
-            set(c1, r1, EMP);
+            removePiece(replaced, sq1);
         }
-        set(c1, r1, move.movedPiece());
-        set(c0, r0, EMP);
+        addPiece(moved, sq1);
         _turn = _turn.opposite();
     }
 
@@ -144,15 +261,110 @@ class Board implements Iterable<Move> {
     void retract() {
         assert movesMade() > 0;
         Move move = _moves.remove(_moves.size() - 1);
-        Piece replaced = move.replacedPiece();
-        int c0 = move.getCol0(), c1 = move.getCol1();
-        int r0 = move.getRow0(), r1 = move.getRow1();
-        Piece movedPiece = move.movedPiece();
-        set(c1, r1, replaced);
-        set(c0, r0, movedPiece);
+        popHistory();
+        Piece moved = move.movedPiece(), replaced = move.replacedPiece();
+        int sq0 = sq(move.getCol0(), move.getRow0());
+        int sq1 = sq(move.getCol1(), move.getRow1());
+        removePiece(moved, sq1);
+        if (replaced != EMP) {
+            addPiece(replaced, sq1);
+        }
+        addPiece(moved, sq0);
         _turn = _turn.opposite();
     }
 
+    /** Return true iff the current position, with the same side to
+     *  move, occurred earlier: before one of the moves made, or before
+     *  the position restored from a Board (see restore(Board)).  Takes
+     *  constant time unless some earlier position shares its bucket of
+     *  the history filter. */
+    boolean repeated() {
+        return occurred(zobristKey());
+    }
+
+    /** Return true iff MOVE, which must be legal, would lead to a
+     *  position that occurred earlier, as for repeated(). */
+    boolean repeats(Move move) {
+        int moved = move.movedPiece().ordinal();
+        Piece replaced = move.replacedPiece();
+        int sq1 = sq(move.getCol1(), move.getRow1());
+        long key = _key ^ ZOBRIST[moved][sq(move.getCol0(), move.getRow0())]
+            ^ ZOBRIST[moved][sq1];
+        if (replaced != EMP) {
+            key ^= ZOBRIST[replaced.ordinal()][sq1];
+        }
+        return occurred(_turn == WP ? key : key ^ ZOBRIST_WHITE_TO_MOVE);
+    }
+
+    /** Return true iff KEY is in the history. */
+    private boolean occurred(long key) {
+        if (_historyCounts[(int) key & HISTORY_MASK] == 0) {
+            return false;
+        }
+        for (int i = _historySize - 1; i >= 0; i -= 1) {
+            if (_history[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Add KEY to the end of the history. */
+    private void pushHistory(long key) {
+        if (_historySize == _history.length) {
+            _history = Arrays.copyOf(_history, 2 * _historySize);
+        }
+        _history[_historySize] = key;
+        _historySize += 1;
+        _historyCounts[(int) key & HISTORY_MASK] += 1;
+    }
+
+    /** Remove the last key of the history. */
+    private void popHistory() {
+        _historySize -= 1;
+        _historyCounts[(int) _history[_historySize] & HISTORY_MASK] -= 1;
+    }
+
+    /** Remove all keys from the history. */
+    private void clearHistory() {
+        while (_historySize > 0) {
+            popHistory();
+        }
+    }
+
+    /** Put a P (BP or WP) on the empty square SQ. */
+    private void addPiece(Piece p, int sq) {
+        if (p == BP) {
+            _black |= 1L << sq;
+        } else {
+            _white |= 1L << sq;
+        }
+        _key ^= ZOBRIST[p.ordinal()][sq];
+        countLines(sq, 1);
+        sumSquare(p, sq, 1);
+    }
+
+    /** Remove the P (BP or WP) standing on square SQ. */
+    private void removePiece(Piece p, int sq) {
+        if (p == BP) {
+            _black &= ~(1L << sq);
+        } else {
+            _white &= ~(1L << sq);
+        }
+        _key ^= ZOBRIST[p.ordinal()][sq];
+        countLines(sq, -1);
+        sumSquare(p, sq, -1);
+    }
+
+    /** Add DELTA to the piece counts of the four lines through SQ. */
+    private void countLines(int sq, int delta) {
+        int c = sq % M, r = sq / M;
+        _colCount[c] += delta;
+        _rowCount[r] += delta;
+        _diagCount[c - r + M - 1] += delta;
+        _antiCount[c + r] += delta;
+    }
+
     /** Return the Piece representing who is next to move. */
     Piece turn() {
         return _turn;
@@ -163,19 +375,43 @@ class Board implements Iterable<Move> {
         if (move == null) {
             return false;
         }
-        int c0 = move.getCol0();
-        int r0 = move.getRow0();
-        Piece startingPiece = get(c0, r0);
-        if (!startingPiece.abbrev().equals(_turn.abbrev())) {
+        int sq0 = sq(move.getCol0(), move.getRow0());
+        if ((pieces(_turn) & (1L << sq0)) == 0) {
             return false;
         }
         if (move.length() != pieceCountAlong(move)) {
             return false;
         }
-        if (blocked(move)) {
-            return false;
+        return !blocked(move);
+    }
+
+    /** Store the packed forms (see Move.packed()) of all legal moves
+     *  from this position in BUF, starting at index 0, and return how
+     *  many there are.  BUF must have room for MAX_MOVES moves.  Moves
+     *  are generated by starting square (a1, b1, ..., h8) and then
+     *  direction (as for Direction.succ()). */
+    int generateMoves(int[] buf) {
+        long mine = pieces(_turn), theirs = pieces(_turn.opposite());
+        int n = 0;
+        for (long rest = mine; rest != 0; rest &= rest - 1) {
+            int sq0 = Long.numberOfTrailingZeros(rest);
+            int c0 = col(sq0), r0 = row(sq0);
+            for (Direction dir = N; dir != null; dir = dir.succ()) {
+                int k = pieceCountAlong(c0, r0, dir.dc, dir.dr);
+                int c1 = c0 + k * dir.dc, r1 = r0 + k * dir.dr;
+                if (c1 < 1 || c1 > M || r1 < 1 || r1 > M) {
+                    continue;
+                }
+                int sq1 = sq(c1, r1);
+                if ((mine & (1L << sq1)) == 0
+                    && (theirs & BETWEEN[sq0][sq1]) == 0) {
+                    buf[n] = Move.pack(sq0, sq1, _turn,
+                                       (theirs & (1L << sq1)) != 0);
+                    n += 1;
+                }
+            }
         }
-        return true;
+        return n;
     }
 
     /** Return a sequence of all legal moves from this position. */
@@ -194,61 +430,120 @@ class Board implements Iterable<Move> {
         return iterator().hasNext();
     }
 
+    /** Return the sum of the column numbers of SIDE's pieces. */
+    int columnSum(Piece side) {
+        return _columnSum[side.ordinal()];
+    }
+
+    /** Return the sum of the row numbers of SIDE's pieces. */
+    int rowSum(Piece side) {
+        return _rowSum[side.ordinal()];
+    }
+
+    /** Return the sum of Evaluator.SQUARE_VALUES over the squares holding
+     *  SIDE's pieces. */
+    int squareValueSum(Piece side) {
+        return _squareValueSum[side.ordinal()];
+    }
+
     /** Return true iff either player has all his pieces continguous. */
     boolean gameOver() {
         return piecesContiguous(BP) || piecesContiguous(WP);
     }
 
-     /** Return an ArrayList of ArrayLists of Integers that
-      *  contain the coordinates for each SIDE piece in the board. */
-    ArrayList<ArrayList<Integer>> arrayofCoordinates(Piece side) {
-        ArrayList<ArrayList<Integer>> answer = new ArrayList<>();
-        for (int c = 1; c <= M; c++) {
-            for (int r = 1; r <= M; r++) {
-                if (side.abbrev().equals(get(c, r).abbrev())) {
-                    ArrayList<Integer> coords = new ArrayList<>();
-                    coords.add(c);
-                    coords.add(r);
-                    answer.add(coords);
-                }
-            }
+    /** Return the side that has won: the one whose pieces are contiguous,
+     *  or, if both sides' are, the side that just moved.  Return null if
+     *  the game is not over. */
+    Piece winner() {
+        boolean black = piecesContiguous(BP), white = piecesContiguous(WP);
+        if (black && white) {
+            return turn().opposite();
+        } else if (black) {
+            return BP;
+        } else if (white) {
+            return WP;
+        } else {
+            return null;
         }
-        return answer;
-    }
-
-    /** Checks all the places around a coordinate C and R and adds
-     *  the coordinates of that to a HASHSET. */
-    void checkAroundPiece(int c, int r, HashSet<ArrayList<Integer>> hashSet) {
-        String piece = get(c, r).abbrev();
-        ArrayList<Integer> starting = new ArrayList<>();
-        starting.add(c);
-        starting.add(r);
-        hashSet.add(starting);
-        for (int x = -1; x <= 1; x++) {
-            for (int y = -1; y <= 1; y++) {
-                int col = c + x;
-                int row = r + y;
-                if (col >= 1 && col <= M && row >= 1 && row <= M) {
-                    ArrayList<Integer> temp = new ArrayList<>();
-                    temp.add(col);
-                    temp.add(row);
-                    if (get(col, row).abbrev().equals(piece)
-                            && !hashSet.contains(temp)) {
-                        checkAroundPiece(col, row, hashSet);
-                    }
-                }
+    }
+
+    /** Return true iff SIDE's pieces are contiguous.  A connected group
+     *  of N pieces spans at most N rows and N columns, so a wider spread
+     *  is rejected at once.  Otherwise, the group containing one piece
+     *  is found (see group) and compared with the whole. */
+    boolean piecesContiguous(Piece side) {
+        long pieces = pieces(side);
+        int n = Long.bitCount(pieces);
+        if (n <= 1) {
+            return true;
+        }
+        long cols = pieces | pieces >>> 32;
+        cols |= cols >>> 16;
+        cols |= cols >>> 8;
+        cols &= ROW_1;
+        int height = row(highestSquare(pieces)) - row(lowestSquare(pieces));
+        int width = highestSquare(cols) - lowestSquare(cols);
+        if (height >= n || width >= n) {
+            return false;
+        }
+        return group(pieces) == pieces;
+    }
+
+    /** Return the number of groups formed by SIDE's pieces, where a group
+     *  is a set of pieces connected through adjacent (including
+     *  diagonally adjacent) squares. */
+    int groupCount(Piece side) {
+        int count = 0;
+        for (long rest = pieces(side); rest != 0; rest &= ~group(rest)) {
+            count += 1;
+        }
+        return count;
+    }
+
+    /** Return the number of SIDE's pieces outside its largest group. */
+    int stragglers(Piece side) {
+        long pieces = pieces(side);
+        int largest = 0;
+        for (long rest = pieces; rest != 0;) {
+            long group = group(rest);
+            largest = Math.max(largest, Long.bitCount(group));
+            rest &= ~group;
+        }
+        return Long.bitCount(pieces) - largest;
+    }
+
+    /** Return the group among the nonempty set of squares PIECES that
+     *  contains its lowest square, grown from that square a ring of
+     *  neighbors at a time until it stops growing. */
+    private static long group(long pieces) {
+        long group = Long.lowestOneBit(pieces);
+        while (true) {
+            long next = neighborhood(group) & pieces;
+            if (next == group) {
+                return group;
             }
+            group = next;
         }
     }
 
-    /** Return true iff SIDE's pieces are contiguous. */
-    boolean piecesContiguous(Piece side) {
-        ArrayList<ArrayList<Integer>> coordinates = arrayofCoordinates(side);
-        int col = coordinates.get(0).get(0);
-        int row = coordinates.get(0).get(1);
-        HashSet<ArrayList<Integer>> hashSet = new HashSet<>();
-        checkAroundPiece(col, row, hashSet);
-        return hashSet.size() == coordinates.size();
+    /** Return the index of the lowest-numbered square in nonempty
+     *  mask SQUARES. */
+    static int lowestSquare(long squares) {
+        return Long.numberOfTrailingZeros(squares);
+    }
+
+    /** Return the index of the highest-numbered square in nonempty
+     *  mask SQUARES. */
+    static int highestSquare(long squares) {
+        return SQUARES - 1 - Long.numberOfLeadingZeros(squares);
+    }
+
+    /** Return the set of squares in or adjacent (including diagonally)
+     *  to a square in the set SQUARES, as a mask. */
+    static long neighborhood(long squares) {
+        long row = squares | (squares << 1 & ~COL_A)
+            | (squares >>> 1 & ~COL_H);
+        return row | row << M | row >>> M;
     }
 
     /** Return the total number of moves that have been made (and not
@@ -258,15 +553,26 @@ class Board implements Iterable<Move> {
         return _moves.size();
     }
 
+    /** Return a 64-bit Zobrist hash of the current position (contents and
+     *  side to move).  Equal positions have equal keys. */
+    long zobristKey() {
+        return _turn == WP ? _key ^ ZOBRIST_WHITE_TO_MOVE : _key;
+    }
+
     @Override
     public boolean equals(Object obj) {
+        if (!(obj instanceof Board)) {
+            return false;
+        }
         Board b = (Board) obj;
-        return b.toString().equals(this.toString());
+        return b.zobristKey() == zobristKey()
+            && b._black == _black && b._white == _white && b._turn == _turn;
     }
 
     @Override
     public int hashCode() {
-        return this.toString().hashCode();
+        long key = zobristKey();
+        return (int) (key ^ (key >>> 32));
     }
 
     @Override
@@ -284,70 +590,40 @@ class Board implements Iterable<Move> {
         return out.toString();
     }
 
-    /** Return the direction of movement based on a MOVE. */
-    private Direction getDirection(Move move) {
-        int c0 = move.getCol0();
-        int r0 = move.getRow0();
-        int c1 = move.getCol1();
-        int r1 = move.getRow1();
-        int dRow = r1 - r0;
-        int dCol = c1 - c0;
-        if (dCol == 0 && dRow > 0) {
-            return N;
-        }
-        if (dCol == 0 && dRow < 0) {
-            return S;
-        }
-        if (dCol < 0 && dRow == 0) {
-            return W;
-        }
-        if (dCol > 0 && dRow == 0) {
-            return E;
-        }
-        if (dCol > 0 && dRow > 0) {
-            return NE;
-        }
-        if (dCol < 0 && dRow > 0) {
-            return NW;
-        }
-        if (dCol > 0 && dRow < 0) {
-            return SE;
-        }
-        if (dCol < 0 && dRow < 0) {
-            return SW;
-        }
-        return NOWHERE;
+    /** Add DELTA times the column, row and square value of SQ to the
+     *  corresponding sums for P. */
+    private void sumSquare(Piece p, int sq, int delta) {
+        int k = p.ordinal();
+        _columnSum[k] += delta * col(sq);
+        _rowSum[k] += delta * row(sq);
+        _squareValueSum[k] += delta * Evaluator.SQUARE_VALUES[sq];
     }
 
     /** Return the number of pieces in the line of action indicated by MOVE. */
     private int pieceCountAlong(Move move) {
-        Direction d = getDirection(move);
-        return pieceCountAlong(move.getCol0(), move.getRow0(), d);
+        return pieceCountAlong(move.getCol0(), move.getRow0(),
+                               move.getCol1() - move.getCol0(),
+                               move.getRow1() - move.getRow0());
     }
 
     /** Return the number of pieces in the line of action in direction DIR and
      *  containing the square at column C and row R. */
-    private int pieceCountAlong(int c, int r, Direction dir) {
-        int counter = -1;
-        int tempC = c;
-        int tempR = r;
-        while ((tempC >= 1 && tempR >= 1) && (tempC <= M && tempR <= M)) {
-            if (!get(tempC, tempR).abbrev().equals("-")) {
-                counter++;
-            }
-            tempR += dir.dr;
-            tempC += dir.dc;
-        }
-        tempC = c;
-        tempR = r;
-        while ((tempC >= 1 && tempR >= 1) && (tempC <= M && tempR <= M)) {
-            if (!get(tempC, tempR).abbrev().equals("-")) {
-                counter++;
-            }
-            tempR -= dir.dr;
-            tempC -= dir.dc;
+    int pieceCountAlong(int c, int r, Direction dir) {
+        return pieceCountAlong(c, r, dir.dc, dir.dr);
+    }
+
+    /** Return the number of pieces on the line containing the square at
+     *  column C and row R along which a step of DC columns and DR rows
+     *  runs. */
+    private int pieceCountAlong(int c, int r, int dc, int dr) {
+        if (dc == 0) {
+            return _colCount[c - 1];
+        } else if (dr == 0) {
+            return _rowCount[r - 1];
+        } else if ((dc > 0) == (dr > 0)) {
+            return _diagCount[c - r + M - 1];
         }
-        return counter;
+        return _antiCount[c + r - 2];
     }
 
     /** Return whether a MOVE is blocked by an opposing piece in its path
@@ -356,35 +632,44 @@ class Board implements Iterable<Move> {
         if (move == null) {
             return true;
         }
-        int c0 = move.getCol0();
-        int r0 = move.getRow0();
-        int c1 = move.getCol1();
-        int r1 = move.getRow1();
-        if (get(c1, r1).abbrev().equals(_turn.abbrev())) {
+        int sq0 = sq(move.getCol0(), move.getRow0());
+        int sq1 = sq(move.getCol1(), move.getRow1());
+        if ((pieces(_turn) & (1L << sq1)) != 0) {
             return true;
         }
-        int deltaR = 0, deltaC = 0;
-        if (r1 > r0) {
-            deltaR = 1;
-        }
-        if (r1 < r0) {
-            deltaR = -1;
-        }
-        if (c1 > c0) {
-            deltaC = 1;
-        }
-        if (c1 < c0) {
-            deltaC = -1;
+        return (pieces(_turn.opposite()) & BETWEEN[sq0][sq1]) != 0;
+    }
+
+    /** A position: the squares holding each side's pieces, and the side
+     *  to move. */
+    static final class Snapshot {
+        /** The position with black pieces on BLACK, white pieces on WHITE
+         *  (as masks of squares) and TURN to move. */
+        Snapshot(long black, long white, Piece turn) {
+            _black = black;
+            _white = white;
+            _turn = turn;
         }
-        for (int i = 1; i < move.length(); i++) {
-            if (get(c0 + deltaC, r0
-                    + deltaR).abbrev().equals(_turn.opposite().abbrev())) {
-                return true;
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Snapshot)) {
+                return false;
             }
-            c0 += deltaC;
-            r0 += deltaR;
+            Snapshot other = (Snapshot) obj;
+            return _black == other._black && _white == other._white
+                && _turn == other._turn;
         }
-        return false;
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(_black * 31 + _white) ^ _turn.ordinal();
+        }
+
+        /** Masks of the squares of the black and white pieces. */
+        private final long _black, _white;
+        /** Side to move. */
+        private final Piece _turn;
     }
 
     /** The standard initial configuration for Lines of Action. */
@@ -401,82 +686,116 @@ class Board implements Iterable<Move> {
 
     /** List of all unretracted moves on this board, in order. */
     private final ArrayList<Move> _moves = new ArrayList<>();
+
+    /** Initial capacity of the history. */
+    private static final int INITIAL_HISTORY = 64;
+    /** Log2 of the number of buckets of the history filter. */
+    private static final int HISTORY_BITS = 10;
+    /** Mask selecting a key's bucket of the history filter. */
+    private static final int HISTORY_MASK = (1 << HISTORY_BITS) - 1;
+    /** Keys (as for zobristKey()) of the positions before each move made
+     *  and of those preceding a position restored from a Board, oldest
+     *  first, in _history[0 .. _historySize - 1]: a stack pushed by
+     *  makeMove and popped by retract. */
+    private long[] _history = new long[INITIAL_HISTORY];
+    /** Number of keys in the history. */
+    private int _historySize;
+    /** _historyCounts[b] is the number of keys in the history whose
+     *  lowest HISTORY_BITS bits are b, so that a position that has not
+     *  occurred before is almost always seen to be new without searching
+     *  the history. */
+    private final int[] _historyCounts = new int[1 << HISTORY_BITS];
     /** Current side on move. */
     private Piece _turn;
-    /** The current state of the board. */
-    private Piece[][] _currentState = {
-            { EMP, BP,  BP,  BP,  BP,  BP,  BP,  EMP },
-            { WP,  EMP, EMP, EMP, EMP, EMP, EMP, WP  },
-            { WP,  EMP, EMP, EMP, EMP, EMP, EMP, WP  },
-            { WP,  EMP, EMP, EMP, EMP, EMP, EMP, WP  },
-            { WP,  EMP, EMP, EMP, EMP, EMP, EMP, WP  },
-            { WP,  EMP, EMP, EMP, EMP, EMP, EMP, WP  },
-            { WP,  EMP, EMP, EMP, EMP, EMP, EMP, WP  },
-            { EMP, BP,  BP,  BP,  BP,  BP,  BP,  EMP }
-    };
+    /** Masks of the squares occupied by black and by white pieces.  Bit
+     *  sq(c, r) is set iff the corresponding square holds such a piece. */
+    private long _black, _white;
+    /** Number of pieces of either color in each column and each row,
+     *  indexed by column or row number - 1. */
+    private final int[] _colCount = new int[M], _rowCount = new int[M];
+    /** Number of pieces of either color on each diagonal (indexed by
+     *  column - row + M - 1) and each anti-diagonal (indexed by
+     *  column + row - 2). */
+    private final int[] _diagCount = new int[2 * M - 1],
+        _antiCount = new int[2 * M - 1];
+    /** Sums of the column numbers, row numbers and square values of the
+     *  black and white pieces (indexed by ordinal). */
+    private final int[] _columnSum = new int[2], _rowSum = new int[2],
+        _squareValueSum = new int[2];
+
+    /** Masks of the squares in row 1, column a and column h. */
+    static final long ROW_1 = 0xffL, COL_A = 0x0101010101010101L,
+        COL_H = COL_A << (M - 1);
+
+    /** Zobrist hash of the piece placement: the exclusive or of
+     *  ZOBRIST[p.ordinal()][sq] over each piece p standing on square sq. */
+    private long _key;
+
+    /** Random keys for a black or white piece (by ordinal) on each square. */
+    private static final long[][] ZOBRIST = new long[2][SQUARES];
+    /** Random key included in zobristKey() when white is to move. */
+    private static final long ZOBRIST_WHITE_TO_MOVE;
+
+    static {
+        Random keys = new Random(0x10aL);
+        for (long[] side : ZOBRIST) {
+            for (int s = 0; s < SQUARES; s += 1) {
+                side[s] = keys.nextLong();
+            }
+        }
+        ZOBRIST_WHITE_TO_MOVE = keys.nextLong();
+    }
+
+    /** BETWEEN[s0][s1] is the mask of squares strictly between s0 and s1
+     *  when they lie on a common line, and otherwise 0. */
+    private static final long[][] BETWEEN = new long[SQUARES][SQUARES];
+
+    static {
+        for (int s = 0; s < SQUARES; s += 1) {
+            for (Direction dir = N; dir != null; dir = dir.succ()) {
+                int c = col(s) + dir.dc, r = row(s) + dir.dr;
+                long path = 0L;
+                while (1 <= c && c <= M && 1 <= r && r <= M) {
+                    int t = sq(c, r);
+                    BETWEEN[s][t] = path;
+                    path |= 1L << t;
+                    c += dir.dc;
+                    r += dir.dr;
+                }
+            }
+        }
+    }
 
     /** An iterator returning the legal moves from the current board. */
     private class MoveIterator implements Iterator<Move> {
-        /** Current piece under consideration. */
-        private int _c, _r;
-        /** Next direction of current piece to return. */
-        private Direction _dir;
-        /** Next move. */
-        private Move _move;
+        /** Packed forms of the moves, as from generateMoves. */
+        private final int[] _packed = new int[MAX_MOVES];
+        /** Number of moves in _packed. */
+        private final int _count;
+        /** Index in _packed of the next move to return. */
+        private int _next;
 
         /** A new move iterator for turn(). */
         MoveIterator() {
-            _c = 1; _r = 1; _dir = NOWHERE;
-            incr();
+            _count = generateMoves(_packed);
         }
 
         @Override
         public boolean hasNext() {
-            return _move != null;
+            return _next < _count;
         }
 
         @Override
         public Move next() {
-            if (_move == null) {
+            if (_next >= _count) {
                 throw new NoSuchElementException("no legal move");
             }
-
-            Move move = _move;
-            incr();
-            return move;
+            _next += 1;
+            return Move.fromPacked(_packed[_next - 1]);
         }
 
         @Override
         public void remove() {
         }
-
-        /** Advance to the next legal move. */
-        private void incr() {
-            _move = null;
-            while (_r <= M) {
-                while (_c <= M) {
-                    if (!get(_c, _r).abbrev().equals(EMP.abbrev())) {
-                        while (_dir != null) {
-                            _move = Move.create(_c, _r,
-                                    pieceCountAlong(_c, _r, _dir),
-                                    _dir, Board.this);
-                            _dir = _dir.succ();
-                            if (isLegal(_move)) {
-                                return;
-                            }
-                        }
-                    }
-                    if (_c == M) {
-                        _c = 1;
-                        _dir = N;
-                        break;
-                    } else {
-                        _c++;
-                        _dir = N;
-                    }
-                }
-                _r++;
-            }
-        }
     }
 }
@@ -0,0 +1,56 @@
+package loa;
+
+import java.util.ArrayDeque;
+
+/** Per-thread pools of scratch Boards, so that a worker that needs a
+ *  Board for a while (to replay or explore a position) reuses one rather
+ *  than allocating one each time.  A Board taken from the pool with
+ *  acquire should be given back with release by the same thread, and not
+ *  used afterwards.
+ *  @author Maaz Uddin
+ */
+class BoardPool {
+
+    /** Most Boards kept in a thread's pool. */
+    static final int MAX_POOLED = 8;
+
+    /** Return a Board, from the current thread's pool if possible, set to
+     *  POSITION with no moves made. */
+    static Board acquire(Board.Snapshot position) {
+        Board board = take();
+        board.restore(position);
+        return board;
+    }
+
+    /** Return a Board, from the current thread's pool if possible, set to
+     *  the position on BOARD, with the positions that preceded it but no
+     *  moves made (see Board.restore(Board)). */
+    static Board acquire(Board board) {
+        Board result = take();
+        result.restore(board);
+        return result;
+    }
+
+    /** Return BOARD, obtained from acquire, to the current thread's
+     *  pool. */
+    static void release(Board board) {
+        ArrayDeque<Board> pool = POOLS.get();
+        if (pool.size() < MAX_POOLED) {
+            pool.addFirst(board);
+        }
+    }
+
+    /** Return a Board from the current thread's pool, or a new one if it
+     *  is empty. */
+    private static Board take() {
+        Board board = POOLS.get().pollFirst();
+        return board == null ? new Board() : board;
+    }
+
+    /** The snapshot of the standard initial position. */
+    static final Board.Snapshot INITIAL = new Board().snapshot();
+
+    /** The pool of each thread. */
+    private static final ThreadLocal<ArrayDeque<Board>> POOLS =
+        ThreadLocal.withInitial(ArrayDeque::new);
+}
@@ -0,0 +1,206 @@
+package loa;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import ucb.util.CommandArgs;
+
+import static loa.Piece.*;
+
+/** Builds OpeningBooks.  Entries come from either of two sources.  A
+ *  search explores every line of the first few plies in which one side
+ *  plays all its legal moves and the other plays only the move that a
+ *  deep search finds best, and adds each such move, with weight 1.
+ *  Self-play plays games whose first few plies are random, and adds each
+ *  of the searched moves of the next few plies made by the eventual
+ *  winner, with weight 1 for each game won.  (The random moves only
+ *  vary the games; they are not added.)
+ *  @author Maaz Uddin
+ */
+class BookBuilder {
+
+    /** Build a book and write it to a file.  ARGS are the name of the
+     *  file, followed by any of
+     *      --plies=N     Cover the first N plies of the game (default 4),
+     *                    or in self-play, the N plies after the random
+     *                    ones.
+     *      --depth=N     Search N plies deep to choose moves (default 5).
+     *      --games=N     Learn from N self-play games instead of searching.
+     *      --parallel=N  Play N self-play games at once.
+     *      --random=N    Play the first N plies of self-play games at
+     *                    random (default 2).
+     *      --seed=N      Seed the random openings of self-play games.
+     */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--=(.*){1} --plies=(\\d+){0,1} "
+                            + "--depth=([1-9]\\d*){0,1} "
+                            + "--games=(\\d+){0,1} "
+                            + "--parallel=([1-9]\\d*){0,1} "
+                            + "--random=(\\d+){0,1} "
+                            + "--seed=(-?\\d+){0,1}", args);
+        if (!options.ok()) {
+            System.err.println("Usage: java loa.BookBuilder FILE "
+                               + "[--plies=N] [--depth=N] [--games=N] "
+                               + "[--parallel=N] [--random=N] "
+                               + "[--seed=N]");
+            System.exit(1);
+        }
+        int plies =
+            options.contains("--plies") ? options.getInt("--plies") : 4;
+        int depth =
+            options.contains("--depth") ? options.getInt("--depth") : 5;
+        if (depth > Searcher.MAX_DEPTH) {
+            Main.error(1, "--depth must be at most %d.%n", Searcher.MAX_DEPTH);
+        }
+
+        BookBuilder builder = new BookBuilder();
+        if (options.contains("--games")) {
+            int random =
+                options.contains("--random") ? options.getInt("--random") : 2;
+            SelfPlay runner = new SelfPlay();
+            runner.setSearchDepth(depth);
+            runner.setRandomPlies(random);
+            if (options.contains("--seed")) {
+                runner.setSeed(Long.parseLong(options.getLast("--seed")));
+            }
+            int parallel = options.contains("--parallel")
+                ? options.getInt("--parallel")
+                : Runtime.getRuntime().availableProcessors();
+            runner.run(options.getInt("--games"), parallel,
+                       result -> builder.addGame(result, random, plies));
+        } else {
+            builder.addSearches(plies, depth);
+        }
+        try {
+            Path file = Paths.get(options.getFirst("--"));
+            builder.write(file);
+            System.out.printf("%d positions, %d entries written to %s%n",
+                              builder.positions(), builder.entries(), file);
+        } catch (IOException excp) {
+            Main.error(1, "cannot write book: %s%n", excp.getMessage());
+        }
+    }
+
+    /** Add the moves of the winner of the game RESULT among the PLIES
+     *  plies following its first RANDOM plies, which were random. */
+    void addGame(SelfPlay.Result result, int random, int plies) {
+        if (result.winner() == null) {
+            return;
+        }
+        Board board = BoardPool.acquire(BoardPool.INITIAL);
+        Move[] moves = result.moves();
+        int end = Math.min(random + plies, moves.length);
+        for (int i = 0; i < end; i += 1) {
+            if (i >= random && board.turn() == result.winner()) {
+                add(board, moves[i]);
+            }
+            board.makeMove(moves[i]);
+        }
+        BoardPool.release(board);
+    }
+
+    /** Add the moves found best by searching DEPTH plies for each side in
+     *  each of the positions reached in the first PLIES plies when that
+     *  side plays those moves and the other plays any move. */
+    void addSearches(int plies, int depth) {
+        Board board = BoardPool.acquire(BoardPool.INITIAL);
+        for (Piece side : new Piece[] { BP, WP }) {
+            addSearches(board, side, plies, depth, new HashSet<>());
+        }
+        BoardPool.release(board);
+    }
+
+    /** Add the moves found best for SIDE by searching DEPTH plies in
+     *  BOARD and the positions following it for PLIES plies, skipping
+     *  positions whose keys are in VISITED (and adding those visited). */
+    private void addSearches(Board board, Piece side, int plies, int depth,
+                             Set<Long> visited) {
+        if (plies == 0 || board.gameOver()
+            || !visited.add(board.zobristKey())) {
+            return;
+        }
+        if (board.turn() == side) {
+            _searcher.setPosition(board, _table, null);
+            Move best = _searcher.iterate(1, depth, 0);
+            if (best != null) {
+                add(board, best);
+                board.makeMove(best);
+                addSearches(board, side, plies - 1, depth, visited);
+                board.retract();
+            }
+        } else {
+            for (Iterator<Move> moves = board.legalMoves();
+                 moves.hasNext();) {
+                board.makeMove(moves.next());
+                addSearches(board, side, plies - 1, depth, visited);
+                board.retract();
+            }
+        }
+    }
+
+    /** Add one to the weight of MOVE in the position on BOARD. */
+    void add(Board board, Move move) {
+        _weights.computeIfAbsent(board.zobristKey(), k -> new HashMap<>())
+            .merge(move.index(), 1, Integer::sum);
+    }
+
+    /** Return the number of positions with moves. */
+    int positions() {
+        return _weights.size();
+    }
+
+    /** Return the number of moves over all positions. */
+    int entries() {
+        int n = 0;
+        for (Map<Integer, Integer> moves : _weights.values()) {
+            n += moves.size();
+        }
+        return n;
+    }
+
+    /** Write the book built so far to FILE. */
+    void write(Path file) throws IOException {
+        int n = entries();
+        long[] keys = new long[n];
+        int[] moves = new int[n], weights = new int[n];
+        ArrayList<Long> positions = new ArrayList<>(_weights.keySet());
+        Collections.sort(positions);
+        int i = 0;
+        for (long key : positions) {
+            ArrayList<Map.Entry<Integer, Integer>> entries =
+                new ArrayList<>(_weights.get(key).entrySet());
+            entries.sort((e0, e1) -> e0.getValue().equals(e1.getValue())
+                         ? e0.getKey() - e1.getKey()
+                         : e1.getValue() - e0.getValue());
+            for (Map.Entry<Integer, Integer> entry : entries) {
+                keys[i] = key;
+                moves[i] = entry.getKey();
+                weights[i] = entry.getValue();
+                i += 1;
+            }
+        }
+        OpeningBook.write(file, keys, moves, weights, n);
+    }
+
+    /** Size in megabytes of the transposition table used in searches. */
+    private static final int HASH_SIZE = 64;
+
+    /** Weights of the moves (by Move.index()) in each position (by
+     *  Board.zobristKey()). */
+    private final HashMap<Long, HashMap<Integer, Integer>> _weights =
+        new HashMap<>();
+    /** Searches for the best moves. */
+    private final Searcher _searcher = new Searcher();
+    /** Results of those searches. */
+    private final TranspositionTable _table =
+        new TranspositionTable(HASH_SIZE);
+}
@@ -0,0 +1,214 @@
+package loa;
+
+import static loa.Board.MAX_MOVES;
+import static loa.Searcher.MAX_PLY;
+import static loa.Searcher.WINNING_VALUE;
+import static loa.Searcher.fromTable;
+import static loa.Searcher.toTable;
+
+/** A solver for positions in which one side is close to connecting its
+ *  pieces.  It runs a depth-first alpha-beta search like Searcher's,
+ *  except that every position that is not won or lost is valued 0,
+ *  "unknown": a value of WINNING_VALUE - K means that the side to move
+ *  wins in K plies whatever the other side does, -WINNING_VALUE + K that
+ *  it loses in K plies whatever it does, and 0 that neither is proven
+ *  within the search depth.  Since such a search needs no evaluation and
+ *  prunes far more, it sees deeper than Searcher in the same time.  It
+ *  keeps its results in its own small TranspositionTable.  Moves towards
+ *  the mover's own pieces are tried first, since they are the likeliest
+ *  to connect.
+ *  @author Maaz Uddin
+ */
+class EndgameSolver {
+
+    /** Greatest depth searched. */
+    static final int MAX_SOLVE_DEPTH = 8;
+
+    /** Number of positions visited by a call to solve before it gives
+     *  up. */
+    static final int NODE_LIMIT = 5_000;
+
+    /** Largest number of pieces outside its largest group that a side
+     *  may have for it to be near connection. */
+    static final int MAX_STRAGGLERS = 3;
+
+    /** Size in megabytes of a solver's transposition table. */
+    static final int HASH_SIZE = 2;
+
+    /** Return true iff either side on BOARD is near connection: has at
+     *  most MAX_STRAGGLERS pieces outside its largest group.  A cheap
+     *  test of whether solve is worth calling. */
+    static boolean nearConnected(Board board) {
+        for (Piece side : SIDES) {
+            if (board.groupCount(side) <= MAX_STRAGGLERS + 1
+                && board.stragglers(side) <= MAX_STRAGGLERS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return the move for the side to move on BOARD that wins soonest if
+     *  that side can be proven to win, or that loses latest if it can be
+     *  proven to lose; otherwise (or if the search is cut short), return
+     *  null.  The proven value is left in value(). */
+    Move solve(Board board) {
+        _board.restore(board.snapshot());
+        _table.newSearch();
+        _nodes = 0;
+        _aborted = false;
+        _value = 0;
+        for (int depth = 1; depth <= MAX_SOLVE_DEPTH; depth += 1) {
+            _bestMove = null;
+            int val = negamax(depth, -Searcher.INFTY, Searcher.INFTY, 0);
+            if (_aborted) {
+                break;
+            }
+            if (Math.abs(val) >= WINNING_VALUE - MAX_PLY) {
+                _value = val;
+                Reporter.debug(1, "solved at depth %d: %s (%d plies, "
+                               + "%d nodes)", depth, _bestMove,
+                               WINNING_VALUE - Math.abs(val), _nodes);
+                return _bestMove;
+            }
+        }
+        return null;
+    }
+
+    /** Return the value of the last position solved (see solve), or 0 if
+     *  it was not solved. */
+    int value() {
+        return _value;
+    }
+
+    /** Return the number of positions visited by the last call to
+     *  solve. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the proven value of _board for the side to move, searching
+     *  DEPTH more plies below a node PLY plies from the root, within the
+     *  bounds ALPHA and BETA, as for Searcher.negamax.  At the root, the
+     *  best move is left in _bestMove.  _board is unchanged on
+     *  return. */
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        if (++_nodes > NODE_LIMIT) {
+            _aborted = true;
+        }
+        if (_aborted) {
+            return 0;
+        }
+        if (_board.piecesContiguous(_board.turn().opposite())) {
+            return -WINNING_VALUE + ply;
+        }
+        if (_board.piecesContiguous(_board.turn())) {
+            return WINNING_VALUE - ply;
+        }
+        if (depth == 0) {
+            return 0;
+        }
+
+        long key = _board.zobristKey();
+        long entry = _table.probe(key);
+        int tableMove = TranspositionTable.NO_MOVE;
+        if (entry != TranspositionTable.MISS) {
+            tableMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int val = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                    || bound == TranspositionTable.LOWER && val >= beta
+                    || bound == TranspositionTable.UPPER && val <= alpha) {
+                    return val;
+                }
+            }
+        }
+
+        int[] moves = _moveBuffers[ply];
+        int count = _board.generateMoves(moves);
+        order(moves, count, tableMove);
+        int alpha0 = alpha;
+        int bestVal = -Searcher.INFTY;
+        int bestMove = 0;
+        for (int i = 0; !_aborted && alpha < beta && i < count; i += 1) {
+            Move move = Move.fromPacked(moves[i]);
+            _board.makeMove(move);
+            int val = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            _board.retract();
+            if (val > bestVal) {
+                bestVal = val;
+                bestMove = moves[i];
+                alpha = Math.max(alpha, val);
+            }
+        }
+        if (_aborted) {
+            return 0;
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        int bound;
+        if (bestVal <= alpha0) {
+            bound = TranspositionTable.UPPER;
+        } else if (bestVal >= beta) {
+            bound = TranspositionTable.LOWER;
+        } else {
+            bound = TranspositionTable.EXACT;
+        }
+        Move best = Move.fromPacked(bestMove);
+        _table.store(key, depth, bound, toTable(bestVal, ply), best.index());
+        if (ply == 0) {
+            _bestMove = best;
+        }
+        return bestVal;
+    }
+
+    /** Sort the packed moves MOVES[0 .. COUNT-1] from _board so that the
+     *  move whose index() is TABLEMOVE comes first, followed by the
+     *  others in decreasing order of the number of the mover's other
+     *  pieces next to their destinations. */
+    private void order(int[] moves, int count, int tableMove) {
+        long mine = _board.pieces(_board.turn());
+        for (int i = 0; i < count; i += 1) {
+            int move = moves[i];
+            int sq0 = (move & (Move.CAPTURE - 1)) / Board.SQUARES,
+                sq1 = move % Board.SQUARES;
+            long others = mine & ~(1L << sq0);
+            int score = Long.bitCount(Board.neighborhood(1L << sq1) & others);
+            if ((move & (Move.CAPTURE - 1)) == tableMove) {
+                score = Integer.MAX_VALUE;
+            }
+            int j;
+            for (j = i; j > 0 && _scores[j - 1] < score; j -= 1) {
+                moves[j] = moves[j - 1];
+                _scores[j] = _scores[j - 1];
+            }
+            moves[j] = move;
+            _scores[j] = score;
+        }
+    }
+
+    /** The two sides. */
+    private static final Piece[] SIDES = { Piece.BP, Piece.WP };
+
+    /** The board on which searches are performed. */
+    private final Board _board = new Board();
+    /** Results of searches, kept between calls to solve. */
+    private final TranspositionTable _table =
+        new TranspositionTable(HASH_SIZE);
+    /** Buffers for the moves generated at each ply. */
+    private final int[][] _moveBuffers =
+        new int[MAX_SOLVE_DEPTH + 1][MAX_MOVES];
+    /** Scores of the moves being ordered. */
+    private final int[] _scores = new int[MAX_MOVES];
+    /** The best move found at the root of the last search. */
+    private Move _bestMove;
+    /** The proven value of the last position solved, or 0. */
+    private int _value;
+    /** Number of positions visited. */
+    private long _nodes;
+    /** True iff the current search has exceeded NODE_LIMIT. */
+    private boolean _aborted;
+}
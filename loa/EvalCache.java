@@ -0,0 +1,148 @@
+package loa;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A bounded cache of static evaluations (see Evaluator.eval) indexed by
+ *  Board.zobristKey().  The table is a single preallocated array of
+ *  longs, stored and checked like those of TranspositionTable, so that
+ *  any number of threads may use it at once without locking.  The slots
+ *  are in groups of PROBE_LIMIT, and a key is looked for in the slots of
+ *  its group in turn (open addressing).  When none of them is free, one
+ *  is chosen for replacement by the "clock" approximation of least-
+ *  recently-used: each entry has a bit that is set when it is found, and
+ *  each group has a hand that sweeps over its slots, clearing set bits,
+ *  until it finds an entry whose bit is clear.
+ *  @author Maaz Uddin
+ */
+class EvalCache {
+
+    /** The value returned by get for a position not in the cache. */
+    static final int MISSING = Integer.MIN_VALUE;
+
+    /** Number of slots searched for a key. */
+    static final int PROBE_LIMIT = 4;
+
+    /** A cache holding about ENTRIES evaluations (rounded up to a power
+     *  of two, and at least PROBE_LIMIT). */
+    EvalCache(int entries) {
+        entries = Math.min(Math.max(entries, PROBE_LIMIT), MAX_ENTRIES);
+        int slots = Integer.highestOneBit(entries);
+        if (slots < entries) {
+            slots <<= 1;
+        }
+        _table = new long[2 * slots];
+        _hands = new byte[slots / PROBE_LIMIT];
+        _mask = slots - 1;
+    }
+
+    /** Return the number of evaluations this cache can hold. */
+    int capacity() {
+        return _table.length / 2;
+    }
+
+    /** Return the evaluation stored for the position with Zobrist key
+     *  KEY, or MISSING if there is none. */
+    int get(long key) {
+        int first = first(key);
+        for (int k = 0; k < PROBE_LIMIT; k += 1) {
+            int i = 2 * (first + k);
+            long data = (long) ENTRY.getOpaque(_table, i + 1);
+            if (data == EMPTY) {
+                break;
+            }
+            if (((long) ENTRY.getOpaque(_table, i) ^ data) == key) {
+                if ((data & REFERENCED) == 0) {
+                    data |= REFERENCED;
+                    ENTRY.setOpaque(_table, i, key ^ data);
+                    ENTRY.setOpaque(_table, i + 1, data);
+                }
+                _hits.increment();
+                return (int) data;
+            }
+        }
+        _misses.increment();
+        return MISSING;
+    }
+
+    /** Record that the position with Zobrist key KEY evaluates to
+     *  VALUE. */
+    void put(long key, int value) {
+        int first = first(key);
+        int slot = -1;
+        for (int k = 0; k < PROBE_LIMIT; k += 1) {
+            int s = first + k;
+            long data = (long) ENTRY.getOpaque(_table, 2 * s + 1);
+            if (data == EMPTY
+                || ((long) ENTRY.getOpaque(_table, 2 * s) ^ data) == key) {
+                slot = s;
+                break;
+            }
+        }
+        if (slot < 0) {
+            slot = victim(first);
+        }
+        long data = (value & VALUE_MASK) | PRESENT;
+        ENTRY.setOpaque(_table, 2 * slot, key ^ data);
+        ENTRY.setOpaque(_table, 2 * slot + 1, data);
+    }
+
+    /** Return the slot to be replaced in the full group starting at slot
+     *  FIRST, advancing the group's hand past referenced entries and
+     *  clearing their bits. */
+    private int victim(int first) {
+        int group = first / PROBE_LIMIT;
+        int hand = _hands[group];
+        while (true) {
+            int s = first + hand;
+            hand = (hand + 1) % PROBE_LIMIT;
+            long data = (long) ENTRY.getOpaque(_table, 2 * s + 1);
+            if ((data & REFERENCED) == 0) {
+                _hands[group] = (byte) hand;
+                return s;
+            }
+            long key = (long) ENTRY.getOpaque(_table, 2 * s) ^ data;
+            data &= ~REFERENCED;
+            ENTRY.setOpaque(_table, 2 * s, key ^ data);
+            ENTRY.setOpaque(_table, 2 * s + 1, data);
+        }
+    }
+
+    /** Return the number of calls to get that found an evaluation. */
+    long hits() {
+        return _hits.sum();
+    }
+
+    /** Return the number of calls to get that found none. */
+    long misses() {
+        return _misses.sum();
+    }
+
+    /** Return the first slot of KEY's group. */
+    private int first(long key) {
+        return (int) ((key ^ (key >>> 32)) & _mask) & -PROBE_LIMIT;
+    }
+
+    /** Largest capacity. */
+    private static final int MAX_ENTRIES = 1 << 28;
+
+    /** Layout of a data word: value in bits 0-31, PRESENT in bit 32 (so
+     *  that no entry is EMPTY), and REFERENCED in bit 33. */
+    private static final long VALUE_MASK = 0xffffffffL,
+        PRESENT = 1L << 32, REFERENCED = 1L << 33, EMPTY = 0L;
+
+    /** Atomic (untorn) access to the elements of _table. */
+    private static final VarHandle ENTRY =
+        MethodHandles.arrayElementVarHandle(long[].class);
+
+    /** Entries, as pairs (key ^ data, data). */
+    private final long[] _table;
+    /** Position of the clock hand within each group. */
+    private final byte[] _hands;
+    /** Mask selecting a slot number from a hashed key. */
+    private final int _mask;
+    /** Counts of calls to get that found and did not find a key. */
+    private final LongAdder _hits = new LongAdder(),
+        _misses = new LongAdder();
+}
@@ -0,0 +1,79 @@
+package loa;
+
+import static loa.Board.*;
+
+/** Static evaluation of Lines of Action positions for the search.  A side
+ *  is better off the more tightly its pieces gather around their center
+ *  of mass, and the more of them stand away from the edges.  The sums
+ *  this needs (of piece coordinates and of SQUARE_VALUES) are kept up to
+ *  date by Board as pieces move, so an evaluation costs one table lookup
+ *  per piece.
+ *  @author Maaz Uddin
+ */
+class Evaluator {
+
+    /** Value of a piece on each square: 0 on the edge, rising by one per
+     *  ring towards the center. */
+    static final int[] SQUARE_VALUES = new int[SQUARES];
+
+    /** DISTANCE[s0][s1] is the number of king steps from square s0 to
+     *  square s1. */
+    static final int[][] DISTANCE = new int[SQUARES][SQUARES];
+
+    /** MIN_DISTANCE_SUM[n] is the least possible total DISTANCE from n
+     *  pieces to a square. */
+    static final int[] MIN_DISTANCE_SUM = new int[SQUARES + 1];
+
+    /** Weight of a one-step difference in concentration, relative to one
+     *  point of SQUARE_VALUES. */
+    static final int CONCENTRATION_WEIGHT = 4;
+
+    static {
+        for (int s0 = 0; s0 < SQUARES; s0 += 1) {
+            int c = col(s0), r = row(s0);
+            SQUARE_VALUES[s0] =
+                Math.min(Math.min(c, M + 1 - c), Math.min(r, M + 1 - r)) - 1;
+            for (int s1 = 0; s1 < SQUARES; s1 += 1) {
+                DISTANCE[s0][s1] = Math.max(Math.abs(c - col(s1)),
+                                            Math.abs(r - row(s1)));
+            }
+        }
+        for (int n = 1, ring = 0, left = 1; n <= SQUARES; n += 1) {
+            if (left == 0) {
+                ring += 1;
+                left = 8 * ring;
+            }
+            MIN_DISTANCE_SUM[n] = MIN_DISTANCE_SUM[n - 1] + ring;
+            left -= 1;
+        }
+    }
+
+    /** Return an int that represents how good BOARD, on which no one has
+     *  won, is for the side to move.  The higher the value, the better. */
+    static int eval(Board board) {
+        Piece me = board.turn(), them = me.opposite();
+        return CONCENTRATION_WEIGHT
+            * (concentration(board, them) - concentration(board, me))
+            + board.squareValueSum(me) - board.squareValueSum(them);
+    }
+
+    /** Return how far SIDE's pieces on BOARD are from being packed as
+     *  tightly as possible around their center of mass: the total
+     *  DISTANCE from the pieces to that center, less the least such
+     *  total possible for that many pieces. */
+    static int concentration(Board board, Piece side) {
+        long pieces = board.pieces(side);
+        int n = Long.bitCount(pieces);
+        if (n == 0) {
+            return 0;
+        }
+        int center = sq((2 * board.columnSum(side) + n) / (2 * n),
+                        (2 * board.rowSum(side) + n) / (2 * n));
+        int[] distances = DISTANCE[center];
+        int sum = 0;
+        for (long rest = pieces; rest != 0; rest &= rest - 1) {
+            sum += distances[lowestSquare(rest)];
+        }
+        return sum - MIN_DISTANCE_SUM[n];
+    }
+}
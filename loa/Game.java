@@ -3,10 +3,12 @@ package loa;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
-import java.util.HashSet;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Random;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 import static loa.Piece.*;
 import static loa.Main.*;
@@ -16,15 +18,32 @@ import static loa.Main.*;
  *  */
 class Game {
 
-    /** A new series of Games. */
+    /** A new series of Games, reading commands from the standard input
+     *  and printing on the standard output. */
     Game() {
+        this(new BufferedReader(new InputStreamReader(System.in)),
+             System.out);
+    }
+
+    /** A new series of Games, reading commands from INPUT and printing
+     *  on OUTPUT, with error messages on the standard error. */
+    Game(BufferedReader input, PrintStream output) {
+        this(input, output, System.err);
+    }
+
+    /** A new series of Games, reading commands from INPUT, printing on
+     *  OUTPUT, and printing error messages on ERRORS. */
+    Game(BufferedReader input, PrintStream output, PrintStream errors) {
         _randomSource = new Random();
 
         _players = new Player[2];
-        _input = new BufferedReader(new InputStreamReader(System.in));
+        _input = input;
+        _out = output;
+        _err = errors;
         _players[0] = new HumanPlayer(BP, this);
         _players[1] = new MachinePlayer(WP, this);
         _playing = false;
+        _board = new Board();
     }
 
     /** Return the current board. */
@@ -32,65 +51,252 @@ class Game {
         return _board;
     }
 
-    /** Quit the game. */
+    /** Return the number of plies searched by automated players. */
+    int searchDepth() {
+        return _searchDepth;
+    }
+
+    /** Return the transposition table shared by automated players. */
+    TranspositionTable transpositionTable() {
+        if (_transpositionTable == null) {
+            _transpositionTable = new TranspositionTable(_hashSize);
+        }
+        return _transpositionTable;
+    }
+
+    /** Make automated players use TABLE, which may be shared with other
+     *  Games. */
+    void setTranspositionTable(TranspositionTable table) {
+        _transpositionTable = table;
+    }
+
+    /** Make the transposition table of automated players use about
+     *  MEGABYTES megabytes, which must be positive. */
+    void setHashSize(int megabytes) {
+        if (megabytes <= 0) {
+            throw new IllegalArgumentException("hash size must be positive");
+        }
+        _hashSize = megabytes;
+        _transpositionTable = null;
+    }
+
+    /** Return the cache of evaluations shared by automated players, or
+     *  null if they do not cache evaluations. */
+    EvalCache evalCache() {
+        if (_evalCache == null && _evalCacheSize > 0) {
+            _evalCache = new EvalCache(_evalCacheSize);
+        }
+        return _evalCache;
+    }
+
+    /** Make automated players cache about ENTRIES evaluations, or none if
+     *  ENTRIES is 0.  ENTRIES must not be negative. */
+    void setEvalCacheSize(int entries) {
+        if (entries < 0) {
+            throw new IllegalArgumentException("cache size must not be "
+                                               + "negative");
+        }
+        _evalCacheSize = entries;
+        _evalCache = null;
+    }
+
+    /** Make automated players use CACHE, which may be shared with other
+     *  Games, to cache evaluations. */
+    void setEvalCache(EvalCache cache) {
+        _evalCacheSize = cache.capacity();
+        _evalCache = cache;
+    }
+
+    /** Return the opening book consulted by automated players, or
+     *  null if they have none. */
+    OpeningBook openingBook() {
+        return _openingBook;
+    }
+
+    /** Make automated players consult BOOK (none if null) before
+     *  searching. */
+    void setOpeningBook(OpeningBook book) {
+        _openingBook = book;
+    }
+
+    /** Return the statistics of the moves made by automated players in
+     *  the current game (or the next, if none is in progress). */
+    SearchStatistics statistics() {
+        if (_statisticsEnded) {
+            _statistics.reset();
+            _statisticsEnded = false;
+        }
+        return _statistics;
+    }
+
+    /** At the end of each game, print the statistics of its automated
+     *  moves on LOG as a line of JSON (not at all if LOG is null). */
+    void setStatisticsLog(PrintStream log) {
+        _statisticsLog = log;
+    }
+
+    /** Return true iff automated players think while the interactive
+     *  game (see play) awaits input. */
+    boolean pondering() {
+        return _pondering;
+    }
+
+    /** Make automated players think while the interactive game awaits
+     *  input iff PONDERING. */
+    void setPondering(boolean pondering) {
+        _pondering = pondering;
+    }
+
+    /** Return the writer to which games played are recorded, or null if
+     *  they are not recorded. */
+    GameRecordWriter recorder() {
+        return _recorder;
+    }
+
+    /** Record the games played from now on with RECORDER (not at all if
+     *  null), ending and closing any previous recorder. */
+    void setRecorder(GameRecordWriter recorder) {
+        endRecord(null);
+        if (_recorder != null) {
+            try {
+                _recorder.close();
+            } catch (IOException excp) {
+                error("cannot close game record");
+            }
+        }
+        _recorder = recorder;
+    }
+
+    /** Return the time in seconds that automated players may spend
+     *  searching for each move, or 0 if they search to searchDepth()
+     *  regardless of time. */
+    double timeLimit() {
+        return _timeLimit;
+    }
+
+    /** Return the greatest time in seconds that automated players may
+     *  spend searching for a move even when timeLimit() is 0, as set by
+     *  limitSearch, or infinity if there is no such bound. */
+    double maxTimeLimit() {
+        return _maxTimeLimit;
+    }
+
+    /** Limit automated players to SECONDS seconds of search per move, or
+     *  remove the limit if SECONDS is 0.  SECONDS must not be negative,
+     *  nor exceed any bound set by limitSearch. */
+    void setTimeLimit(double seconds) {
+        if (!(seconds >= 0)) {
+            throw new IllegalArgumentException("time limit must not be "
+                                               + "negative");
+        }
+        if (seconds > _maxTimeLimit) {
+            throw new IllegalArgumentException("time limit must be at most "
+                                               + _maxTimeLimit);
+        }
+        _timeLimit = seconds;
+    }
+
+    /** Return the number of threads each automated player searches
+     *  with. */
+    int threads() {
+        return _threads;
+    }
+
+    /** Make automated players search with THREADS threads, which must be
+     *  positive. */
+    void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("thread count must be "
+                                               + "positive");
+        }
+        _threads = threads;
+    }
+
+    /** Set the number of plies searched by automated players to DEPTH,
+     *  which must be positive and at most Searcher.MAX_DEPTH (or any
+     *  lower bound set by limitSearch). */
+    void setSearchDepth(int depth) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("search depth must be positive");
+        }
+        if (depth > _maxSearchDepth) {
+            throw new IllegalArgumentException("search depth must be at most "
+                                               + _maxSearchDepth);
+        }
+        _searchDepth = depth;
+    }
+
+    /** From now on, refuse search depths greater than DEPTH, which must be
+     *  between 1 and Searcher.MAX_DEPTH, and time limits greater than
+     *  SECONDS > 0, lowering the current settings to those bounds if they
+     *  exceed them.  Searches to a fixed depth (with no time limit) also
+     *  stop after SECONDS, so that no move takes an automated player much
+     *  longer than that. */
+    void limitSearch(int depth, double seconds) {
+        if (depth <= 0 || depth > Searcher.MAX_DEPTH || !(seconds > 0)) {
+            throw new IllegalArgumentException("bad search limits");
+        }
+        _maxSearchDepth = depth;
+        _maxTimeLimit = seconds;
+        _searchDepth = Math.min(_searchDepth, depth);
+        _timeLimit = Math.min(_timeLimit, seconds);
+    }
+
+    /** Quit the game, causing play() to return. */
     private void quit() {
-        System.exit(0);
+        _quitting = true;
     }
 
     /** Autoprints the board. */
     private boolean autoprint = false;
 
-    /** Return a move.  Processes any other intervening commands as
-     *  well.  Exits with null if the value of _playing changes. */
-    Move getMove() {
-        try {
-            boolean playing0 = _playing;
-            while (_playing == playing0) {
-                prompt();
-
-                String line = _input.readLine();
-                if (line == null) {
-                    quit();
-                }
-
-                line = line.trim();
-                if (!processCommand(line)) {
-                    Move move = Move.create(line, _board);
-                    if (move == null) {
-                        error("invalid move: %s%n", line);
-                    } else if (getBoard().get(move.getCol0(), move.getRow0()).
-                            abbrev().equals(EMP.abbrev())) {
-                        error("invalid move: choosing an empty piece");
-                    } else if (!getBoard().get(move.getCol0(), move.getRow0())
-                            .abbrev().equals(getBoard().turn().abbrev())) {
-                        error("invalid move: choosing an enemy piece");
-                    } else if (!_playing) {
-                        error("game not started");
-                    } else if (!_board.isLegal(move)) {
-                        error("illegal move: %s%n", line);
-                    } else {
-                        return move;
-                    }
-                }
+    /** Process LINE, a command or a move of a human player, and then
+     *  make the moves of automated players that follow it, until a human
+     *  player is to move, the game stops or ends, or play is quit.  Reads
+     *  no input and prints no prompts, so that a caller that reads lines
+     *  itself can drive the game. */
+    void receive(String line) {
+        line = line.trim();
+        if (!processCommand(line)) {
+            Move move = Move.create(line, _board);
+            if (move == null) {
+                error("invalid move: %s%n", line);
+            } else if (!getBoard().get(move.getCol0(), move.getRow0())
+                    .abbrev().equals(getBoard().turn().abbrev())) {
+                error("invalid move: choosing an enemy piece");
+            } else if (!_playing) {
+                error("game not started");
+            } else if (!_board.isLegal(move)) {
+                error("illegal move: %s%n", line);
+            } else {
+                makeMove(move);
             }
-        } catch (IOException excp) {
-            error(1, "unexpected I/O error on input");
         }
-        return null;
+        advance();
+    }
+
+    /** Return true iff play has been quit, so that no more input should
+     *  be given to receive. */
+    boolean quitting() {
+        return _quitting;
     }
 
     /** Print a prompt for a move. */
     private void prompt() {
         if (_playing) {
-            System.out.print(_board.turn().abbrev());
+            _out.print(_board.turn().abbrev());
         }
-        System.out.print("> ");
-        System.out.flush();
+        _out.print("> ");
+        _out.flush();
     }
 
-    /** Describes a command with up to two arguments. */
-    private static final Pattern COMMAND_PATN =
-        Pattern.compile("(#|\\S+)\\s*(\\S*)\\s*(\\S*).*");
+    /** The commands other than moves, each taking up to two
+     *  arguments. */
+    private static final String[] COMMANDS = {
+        "#", "manual", "auto", "seed", "depth", "hash", "evalcache", "book",
+        "record", "ponder", "stats", "time", "threads", "perft", "autoprint",
+        "clear", "start", "dump", "help", "?", "quit", "set",
+    };
 
     /** If LINE is a recognized command other than a move, process it
      *  and return true.  Otherwise, return false. */
@@ -98,52 +304,83 @@ class Game {
         if (line.length() == 0) {
             return true;
         }
-        Matcher command = COMMAND_PATN.matcher(line);
-        if (command.matches()) {
-            switch (command.group(1).toLowerCase()) {
-            case "#":
-                return true;
-            case "manual":
-                manualCommand(command.group(2).toLowerCase());
-                return true;
-            case "auto":
-                autoCommand(command.group(2).toLowerCase());
-                return true;
-            case "seed":
-                seedCommand(command.group(2));
-                return true;
-            case "autoprint":
-                autoprint = true;
-                return true;
-            case "clear":
-                _board.clear();
-                return true;
-            case "start":
-                _playing = true;
-                return true;
-            case "dump":
-                System.out.println(_board);
-                return true;
-            case "help":
-                help();
-                return true;
-            case "?":
-                help();
-                return true;
-            case "quit":
-                quit();
-                return true;
-            case "set":
-                String colrow = command.group(2).toLowerCase();
-                String val = command.group(3).toLowerCase();
-                _board.set(_board.col(colrow), _board.row(colrow),
-                        setValueOf(val));
-                return true;
-            default:
-                return false;
-            }
+        _tokens.reset(line);
+        String command = _tokens.find(0, COMMANDS);
+        if (command == null) {
+            return false;
+        }
+        switch (command) {
+        case "#":
+            return true;
+        case "manual":
+            manualCommand(_tokens.word(1).toLowerCase());
+            return true;
+        case "auto":
+            autoCommand(_tokens.word(1).toLowerCase());
+            return true;
+        case "seed":
+            seedCommand(_tokens.word(1));
+            return true;
+        case "depth":
+            depthCommand(_tokens.word(1));
+            return true;
+        case "hash":
+            hashCommand(_tokens.word(1));
+            return true;
+        case "evalcache":
+            evalCacheCommand(_tokens.word(1));
+            return true;
+        case "book":
+            bookCommand(_tokens.word(1));
+            return true;
+        case "record":
+            recordCommand(_tokens.word(1));
+            return true;
+        case "ponder":
+            ponderCommand(_tokens.word(1).toLowerCase());
+            return true;
+        case "stats":
+            statsCommand(_tokens.word(1).toLowerCase());
+            return true;
+        case "time":
+            timeCommand(_tokens.word(1));
+            return true;
+        case "threads":
+            threadsCommand(_tokens.word(1));
+            return true;
+        case "perft":
+            perftCommand(_tokens.word(1), _tokens.word(2));
+            return true;
+        case "autoprint":
+            autoprint = true;
+            return true;
+        case "clear":
+            _board.clear();
+            return true;
+        case "start":
+            _playing = true;
+            return true;
+        case "dump":
+            _out.println(_board);
+            return true;
+        case "help":
+            help();
+            return true;
+        case "?":
+            help();
+            return true;
+        case "quit":
+            quit();
+            return true;
+        case "set":
+            String colrow = _tokens.word(1).toLowerCase();
+            String val = _tokens.word(2).toLowerCase();
+            _board.set(_board.col(colrow), _board.row(colrow),
+                    setValueOf(val));
+            return true;
+        default:
+            return false;
         }
-        return false;
     }
 
     /** Set player PLAYER ("white" or "black") to be a manual player. */
@@ -177,62 +414,320 @@ class Game {
         }
     }
 
-    /** Play this game, printing any results. */
+    /** Set the search depth of automated players to DEPTH plies. */
+    private void depthCommand(String depth) {
+        try {
+            setSearchDepth(Integer.parseInt(depth));
+        } catch (NumberFormatException excp) {
+            error("Invalid number: %s", depth);
+        } catch (IllegalArgumentException excp) {
+            error("Invalid depth: %s", depth);
+        }
+    }
+
+    /** Give the transposition table of automated players SIZE
+     *  megabytes. */
+    private void hashCommand(String size) {
+        try {
+            setHashSize(Integer.parseInt(size));
+        } catch (NumberFormatException excp) {
+            error("Invalid number: %s", size);
+        } catch (IllegalArgumentException excp) {
+            error("Invalid hash size: %s", size);
+        }
+    }
+
+    /** Make automated players cache ENTRIES evaluations (none if 0). */
+    private void evalCacheCommand(String entries) {
+        try {
+            setEvalCacheSize(Integer.parseInt(entries));
+        } catch (NumberFormatException excp) {
+            error("Invalid number: %s", entries);
+        } catch (IllegalArgumentException excp) {
+            error("Invalid cache size: %s", entries);
+        }
+    }
+
+    /** Make automated players consult the opening book in file FILE, or
+     *  none if FILE is "off". */
+    private void bookCommand(String file) {
+        if (file.equals("off")) {
+            setOpeningBook(null);
+            return;
+        }
+        try {
+            setOpeningBook(new OpeningBook(Paths.get(file)));
+        } catch (IOException | InvalidPathException excp) {
+            error("Cannot read book: %s%n", file);
+        }
+    }
+
+    /** Append the games played from now on to the game records in file
+     *  FILE, or stop recording if FILE is "off". */
+    private void recordCommand(String file) {
+        if (file.equals("off")) {
+            setRecorder(null);
+            return;
+        }
+        try {
+            setRecorder(new GameRecordWriter(
+                            Files.newOutputStream(Paths.get(file),
+                                                  StandardOpenOption.CREATE,
+                                                  StandardOpenOption.APPEND)));
+        } catch (IOException | InvalidPathException excp) {
+            error("Cannot write records: %s%n", file);
+        }
+    }
+
+    /** Turn pondering on or off, as SETTING is "on" or "off". */
+    private void ponderCommand(String setting) {
+        switch (setting) {
+        case "on":
+            setPondering(true);
+            break;
+        case "off":
+            setPondering(false);
+            break;
+        default:
+            error("unknown setting: %s%n", setting);
+            break;
+        }
+    }
+
+    /** Print the statistics of the automated moves of the current or last
+     *  game: for people, or as JSON if FORMAT is "json". */
+    private void statsCommand(String format) {
+        switch (format) {
+        case "":
+            _statistics.print(_out);
+            break;
+        case "json":
+            _statistics.printJson(_out);
+            break;
+        default:
+            error("unknown format: %s%n", format);
+            break;
+        }
+    }
+
+    /** Limit automated players to SECONDS seconds per move (no limit if
+     *  0). */
+    private void timeCommand(String seconds) {
+        try {
+            setTimeLimit(Double.parseDouble(seconds));
+        } catch (NumberFormatException excp) {
+            error("Invalid number: %s", seconds);
+        } catch (IllegalArgumentException excp) {
+            error("Invalid time limit: %s", seconds);
+        }
+    }
+
+    /** Make automated players search with THREADS threads. */
+    private void threadsCommand(String threads) {
+        try {
+            setThreads(Integer.parseInt(threads));
+        } catch (NumberFormatException excp) {
+            error("Invalid number: %s", threads);
+        } catch (IllegalArgumentException excp) {
+            error("Invalid thread count: %s", threads);
+        }
+    }
+
+    /** Count and print the positions DEPTH plies after the current one.
+     *  If OPTION is "divide", also print the count after each move. */
+    private void perftCommand(String depth, String option) {
+        try {
+            int plies = Integer.parseInt(depth);
+            if (plies < 0) {
+                error("Invalid depth: %s", depth);
+            } else {
+                Perft.run(_board, plies,
+                          option.toLowerCase().equals("divide"), _out);
+            }
+        } catch (NumberFormatException excp) {
+            error("Invalid number: %s", depth);
+        }
+    }
+
+    /** Play this game, printing any results, until the input ends, a
+     *  quit command is read or a game is won. */
     public void play() {
-        HashSet<Board> positionsPlayed = new HashSet<Board>();
+        try {
+            run(true);
+        } catch (IOException excp) {
+            Main.error(1, "unexpected I/O error on input");
+        }
+    }
+
+    /** Play as for play(), taking the input as a script rather than from
+     *  a person: there are no prompts, automated players do not ponder,
+     *  and output is not flushed after each line. */
+    void replay() throws IOException {
+        run(false);
+    }
+
+    /** Play this game until the input ends, a quit command is read or a
+     *  game is won, prompting for each line and pondering while it is
+     *  awaited iff INTERACTIVE. */
+    private void run(boolean interactive) throws IOException {
         _board = new Board();
 
-        while (true) {
-            int playerInd = _board.turn().ordinal();
-            Move next;
-            if (_playing) {
-                if (_board.gameOver()) {
-                    announceWinner();
-                    _playing = false;
-                    continue;
-                }
-                next = _players[playerInd].makeMove();
+        advance();
+        while (!_quitting) {
+            if (interactive) {
+                prompt();
+                startPondering();
+            }
+            String line = _input.readLine();
+            stopPondering();
+            if (line == null) {
+                quit();
             } else {
-                getMove();
-                next = null;
+                receive(line);
             }
-            if (next != null) {
-                assert _board.isLegal(next);
-                _board.makeMove(next);
-                if (autoprint) {
-                    System.out.println(_board);
-                }
-                if (_players[playerInd] instanceof MachinePlayer) {
-                    System.out.println(_players[playerInd].side().capital()
-                            + "::" + next);
-                }
-                if (_board.gameOver()) {
-                    announceWinner();
-                    _playing = false;
-                }
+        }
+        endRecord(null);
+    }
+
+    /** If pondering is on and a game is in progress, let the players
+     *  think while input is awaited. */
+    private void startPondering() {
+        if (_pondering && _playing) {
+            for (Player player : _players) {
+                player.startPondering();
             }
         }
     }
 
-    /** Print an announcement of the winner. */
-    private void announceWinner() {
-        if (_board.gameOver()) {
-            Piece piece;
-            if (_board.piecesContiguous(Piece.BP)
-                    && _board.piecesContiguous(Piece.WP)) {
-                piece = _board.turn();
-            } else {
-                piece = Piece.BP;
+    /** Stop any thinking begun by startPondering. */
+    private void stopPondering() {
+        for (Player player : _players) {
+            player.stopPondering();
+        }
+    }
+
+    /** Make receive and step make at most one move of an automated player
+     *  before returning iff STEPPING, so that a caller can do other work
+     *  between moves, making each with step() while machineToMove(). */
+    void setStepping(boolean stepping) {
+        _stepping = stepping;
+    }
+
+    /** Return true iff a game is in progress and an automated player is
+     *  to move in it. */
+    boolean machineToMove() {
+        return !_quitting && _playing && !_board.gameOver()
+            && _players[_board.turn().ordinal()] instanceof MachinePlayer;
+    }
+
+    /** Make the moves of automated players that receive would have made
+     *  after its line, had it not been stepping. */
+    void step() {
+        advance();
+    }
+
+    /** Make the moves of automated players, announcing the winner when
+     *  the game ends, until a human player is to move, the game is
+     *  stopped, play is quit, or, if stepping, one move has been made. */
+    private void advance() {
+        boolean moved = false;
+        while (!_quitting) {
+            if (!_playing) {
+                endRecord(null);
+                return;
             }
-            if (piece != WP) {
-                System.out.println("White wins.");
-            } else {
-                System.out.println("Black wins.");
+            if (_board.gameOver()) {
+                endStatistics();
+                announceWinner();
+                _playing = false;
+                continue;
+            }
+            if (moved && _stepping) {
+                return;
+            }
+            Move next = _players[_board.turn().ordinal()].makeMove();
+            if (next == null) {
+                return;
+            }
+            makeMove(next);
+            moved = true;
+        }
+    }
+
+    /** Make MOVE, which must be legal, for the side to move, printing it
+     *  if it was chosen by an automated player. */
+    private void makeMove(Move move) {
+        int playerInd = _board.turn().ordinal();
+        assert _board.isLegal(move);
+        record(move);
+        _board.makeMove(move);
+        if (autoprint) {
+            _out.println(_board);
+        }
+        if (_players[playerInd] instanceof MachinePlayer) {
+            _out.println(_players[playerInd].side().capital()
+                    + "::" + move);
+        }
+    }
+
+    /** Add MOVE, about to be made, to the record of the current game, if
+     *  games are recorded, starting the record if need be. */
+    private void record(Move move) {
+        if (_recorder == null) {
+            return;
+        }
+        try {
+            if (!_recorder.inGame()) {
+                _recorder.startGame(_board);
             }
-            System.exit(0);
+            _recorder.move(_board, move);
+        } catch (IOException excp) {
+            error("cannot write game record");
+            _recorder = null;
+        }
+    }
+
+    /** End the record of the current game, if any, won by WINNER (null
+     *  if no one). */
+    private void endRecord(Piece winner) {
+        if (_recorder == null || !_recorder.inGame()) {
+            return;
+        }
+        try {
+            _recorder.endGame(winner);
+        } catch (IOException excp) {
+            error("cannot write game record");
+            _recorder = null;
         }
     }
 
+    /** Log the statistics of the game just ended, if they are logged, and
+     *  start those of the next game afresh. */
+    private void endStatistics() {
+        if (_statisticsLog != null) {
+            _statistics.printJson(_statisticsLog);
+        }
+        _statisticsEnded = true;
+    }
+
+    /** Print an announcement of the winner and quit. */
+    private void announceWinner() {
+        Piece winner = _board.winner();
+        endRecord(winner);
+        if (winner != null) {
+            _out.printf("%s wins.%n", winner == BP ? "Black" : "White");
+            quit();
+        }
+    }
+
+    /** Report an error on the error stream, as for Main.error.  FORMAT
+     *  is the message format (as for printf), and ARGS any additional
+     *  arguments. */
+    void error(String format, Object... args) {
+        _err.print("Error: ");
+        _err.printf(format, args);
+    }
+
     /** Return an integer r, 0 <= r < N, randomly chosen from a
      *  uniform distribution using the current random source. */
     int randInt(int n) {
@@ -241,7 +736,7 @@ class Game {
 
     /** Print a help message. */
     void help() {
-        System.out.println("Commands: Commands are whitespace-delimited.  "
+        _out.println("Commands: Commands are whitespace-delimited.  "
                 + "Other "
                 + "trailing text on a line\n"
                 + "          is ignored. Comment lines begin with # and are "
@@ -260,6 +755,26 @@ class Game {
                 + "designations (1-8): \n"
                 + "  clear     Stop game and return to initial position.\n"
                 + "  seed N    Seed the random number with integer N.\n"
+                + "  depth N   Make AIs search N plies ahead.\n"
+                + "  hash N    Give AIs N megabytes of transposition table.\n"
+                + "  book F    Make AIs play from the opening book in file F "
+                + "(off for none).\n"
+                + "  record F  Append the games played to the record file F "
+                + "(off to stop).\n"
+                + "  ponder on|off\n"
+                + "            Let AIs think while waiting for your move.\n"
+                + "  stats [json]\n"
+                + "            Show statistics of AI moves in the current or "
+                + "last game.\n"
+                + "  evalcache N\n"
+                + "            Make AIs cache N evaluations (none if 0).\n"
+                + "  time S    Let AIs think for S seconds per move, searching "
+                + "as deep as\n"
+                + "            time allows (0 to search to a fixed depth).\n"
+                + "  threads N Make AIs search with N threads.\n"
+                + "  perft N [divide]\n"
+                + "            Count positions N moves ahead (by first move, "
+                + "with divide).\n"
                 + "  auto P    P is white or black; makes P into an AI. "
                 + "Stops game.\n"
                 + "  manual P  P is white or black; takes moves for P from "
@@ -275,6 +790,9 @@ class Game {
     /** The official game board. */
     private Board _board;
 
+    /** Splits each line of input into words. */
+    private final Tokenizer _tokens = new Tokenizer();
+
     /** The _players of this game. */
     private Player[] _players = new Player[2];
 
@@ -285,7 +803,76 @@ class Game {
     /** Input source. */
     private BufferedReader _input;
 
+    /** Destination of all output other than error messages. */
+    private PrintStream _out;
+
+    /** Destination of error messages. */
+    private PrintStream _err;
+
+    /** True once play() should return. */
+    private boolean _quitting;
+
     /** True if actually playing (game started and not stopped or finished).
      */
     private boolean _playing;
+
+    /** Default number of plies searched by automated players. */
+    static final int DEFAULT_SEARCH_DEPTH = 3;
+
+    /** Number of plies searched by automated players. */
+    private int _searchDepth = DEFAULT_SEARCH_DEPTH;
+
+    /** True iff receive and step make at most one automated move. */
+    private boolean _stepping;
+
+    /** Greatest search depth accepted. */
+    private int _maxSearchDepth = Searcher.MAX_DEPTH;
+    /** Greatest time limit accepted, in seconds. */
+    private double _maxTimeLimit = Double.POSITIVE_INFINITY;
+
+    /** Default size in megabytes of the transposition table. */
+    static final int DEFAULT_HASH_SIZE = 16;
+
+    /** Size in megabytes of the transposition table. */
+    private int _hashSize = DEFAULT_HASH_SIZE;
+
+    /** Table of search results shared by automated players, or null if
+     *  not yet created. */
+    private TranspositionTable _transpositionTable;
+
+    /** Default number of evaluations cached by automated players. */
+    static final int DEFAULT_EVAL_CACHE_SIZE = 0;
+
+    /** Number of evaluations cached by automated players. */
+    private int _evalCacheSize = DEFAULT_EVAL_CACHE_SIZE;
+
+    /** Evaluations cached by automated players, or null if not yet
+     *  created or not wanted. */
+    private EvalCache _evalCache;
+
+    /** Opening book of automated players, or null. */
+    private OpeningBook _openingBook;
+
+    /** Statistics of the automated moves of the current or last game. */
+    private final SearchStatistics _statistics = new SearchStatistics();
+
+    /** True iff the game whose statistics are in _statistics has
+     *  ended. */
+    private boolean _statisticsEnded;
+
+    /** Where the statistics of each game are logged at its end, or
+     *  null. */
+    private PrintStream _statisticsLog;
+
+    /** True iff automated players ponder while input is awaited. */
+    private boolean _pondering;
+
+    /** Writer of the records of games played, or null. */
+    private GameRecordWriter _recorder;
+
+    /** Seconds of search allowed per automated move, or 0 for no limit. */
+    private double _timeLimit;
+
+    /** Number of threads each automated player searches with. */
+    private int _threads = 1;
 }
@@ -0,0 +1,172 @@
+package loa;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static loa.GameRecordWriter.*;
+import static loa.Piece.*;
+
+/** Reads the games written by a GameRecordWriter, replaying each onto a
+ *  Board one move at a time.  A stream that does not start with a header
+ *  of the current version, or that contains any other header, is
+ *  rejected.
+ *  @author Maaz Uddin
+ */
+class GameRecordReader implements Closeable {
+
+    /** Print the games recorded in the files named by ARGS, one per line,
+     *  as their moves followed by the winner. */
+    public static void main(String... args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java loa.GameRecordReader FILE...");
+            System.exit(1);
+        }
+        Board board = new Board();
+        for (String name : args) {
+            try (GameRecordReader games =
+                     new GameRecordReader(Files.newInputStream(
+                                              Paths.get(name)))) {
+                while (games.nextGame(board)) {
+                    StringBuilder line = new StringBuilder();
+                    for (Move move = games.nextMove(board); move != null;
+                         move = games.nextMove(board)) {
+                        line.append(move).append(' ');
+                    }
+                    Piece winner = games.winner();
+                    line.append(winner == null ? "-" : winner.fullName());
+                    System.out.println(line);
+                }
+            } catch (IOException excp) {
+                Main.error(1, "%s: %s%n", name, excp.getMessage());
+            }
+        }
+    }
+
+    /** A reader of the records in IN. */
+    GameRecordReader(InputStream in) {
+        _in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    /** Set BOARD to the starting position of the next game and return
+     *  true, or return false if there are no more games.  Any moves of
+     *  the current game not yet read are skipped. */
+    boolean nextGame(Board board) throws IOException {
+        while (_inGame) {
+            skipMove();
+        }
+        int marker = _in.read();
+        while (marker == MAGIC >>> 24) {
+            readHeader();
+            marker = _in.read();
+        }
+        if (!_headerRead && marker != -1) {
+            throw new IOException("not a game record");
+        }
+        switch (marker) {
+        case -1:
+            return false;
+        case START_INITIAL:
+            board.restore(BoardPool.INITIAL);
+            break;
+        case START_POSITION:
+            long black = _in.readLong(), white = _in.readLong();
+            Piece turn = piece(_in.readUnsignedByte());
+            if ((black & white) != 0 || turn == EMP) {
+                throw new IOException("bad game record");
+            }
+            board.restore(new Board.Snapshot(black, white, turn));
+            break;
+        default:
+            throw new IOException("bad game record");
+        }
+        _inGame = true;
+        _winner = null;
+        return true;
+    }
+
+    /** Make the next move of the current game on BOARD, which must be in
+     *  the position after the moves read so far, and return it; or return
+     *  null if the game has ended, after which winner() gives its
+     *  winner. */
+    Move nextMove(Board board) throws IOException {
+        if (!_inGame) {
+            return null;
+        }
+        int code = _in.readUnsignedByte();
+        if (code == END) {
+            endGame();
+            return null;
+        }
+        int count = board.generateMoves(_buffer);
+        if (code >= count) {
+            throw new IOException("bad game record");
+        }
+        Move move = Move.fromPacked(_buffer[code]);
+        board.makeMove(move);
+        return move;
+    }
+
+    /** Return the winner of the last game read to its end, or null if it
+     *  had none. */
+    Piece winner() {
+        return _winner;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    /** Read the rest of a header, whose first byte has been read. */
+    private void readHeader() throws IOException {
+        int magic = (MAGIC >>> 24) << 24 | _in.readUnsignedByte() << 16
+            | _in.readUnsignedShort();
+        if (magic != MAGIC) {
+            throw new IOException("not a game record");
+        }
+        int version = _in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("unknown game record version: "
+                                  + version);
+        }
+        _headerRead = true;
+    }
+
+    /** Read the next move of the current game without making it. */
+    private void skipMove() throws IOException {
+        if (_in.readUnsignedByte() == END) {
+            endGame();
+        }
+    }
+
+    /** Read the winner after an END marker. */
+    private void endGame() throws IOException {
+        Piece winner = piece(_in.readUnsignedByte());
+        _winner = winner == EMP ? null : winner;
+        _inGame = false;
+    }
+
+    /** Return the Piece with ordinal ORDINAL. */
+    private static Piece piece(int ordinal) throws IOException {
+        if (ordinal >= Piece.values().length) {
+            throw new IOException("bad game record");
+        }
+        return Piece.values()[ordinal];
+    }
+
+    /** Source of records. */
+    private final DataInputStream _in;
+    /** True iff a header has been read. */
+    private boolean _headerRead;
+    /** True iff a game has been started and not read to its end. */
+    private boolean _inGame;
+    /** Winner of the last game read to its end, or null. */
+    private Piece _winner;
+    /** Moves generated to find a move by its position among them. */
+    private final int[] _buffer = new int[Board.MAX_MOVES];
+}
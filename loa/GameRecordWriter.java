@@ -0,0 +1,135 @@
+package loa;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static loa.Piece.*;
+
+/** Writes games to a stream in a compact binary form, one game at a
+ *  time, as they are played.  A stream of records starts with a header,
+ *  MAGIC (as an int) followed by VERSION (as a byte), which is repeated
+ *  wherever a writer started appending to the stream.  The rest of the
+ *  stream is a sequence of games, each of which is
+ *    - START_INITIAL, if the game starts from the standard initial
+ *      position, or else START_POSITION followed by the masks of the
+ *      black and the white pieces' squares (as two longs) and the side
+ *      to move (the ordinal of BP or WP, as a byte);
+ *    - one byte for each move: its position in the list of legal moves
+ *      produced by Board.generateMoves in the position where it was
+ *      made, which must be less than START_INITIAL (so that a move at
+ *      position 253 or later cannot be recorded);
+ *    - END, followed by the ordinal of the winner as a byte (that of EMP
+ *      if the game has no winner).
+ *  GameRecordReader reads such streams.
+ *  @author Maaz Uddin
+ */
+class GameRecordWriter implements Closeable {
+
+    /** Markers of the starts and end of a game. */
+    static final int START_INITIAL = 0xfd, START_POSITION = 0xfe,
+        END = 0xff;
+
+    /** First four bytes of a header: "LOAR" in ASCII. */
+    static final int MAGIC = 0x4c4f4152;
+
+    /** Version of the format written, the last byte of a header. */
+    static final int VERSION = 1;
+
+    /** Number of bytes in a header. */
+    static final int HEADER_SIZE = 5;
+
+    /** A writer of records to OUT, which starts by writing a header. */
+    GameRecordWriter(OutputStream out) throws IOException {
+        _out = new DataOutputStream(new BufferedOutputStream(out));
+        _out.writeInt(MAGIC);
+        _out.writeByte(VERSION);
+    }
+
+    /** Start the record of a game starting from the position on BOARD,
+     *  ending any game in progress without a winner. */
+    void startGame(Board board) throws IOException {
+        if (_inGame) {
+            endGame(null);
+        }
+        Board.Snapshot start = board.snapshot();
+        if (start.equals(BoardPool.INITIAL)) {
+            _out.writeByte(START_INITIAL);
+        } else {
+            _out.writeByte(START_POSITION);
+            _out.writeLong(board.pieces(BP));
+            _out.writeLong(board.pieces(WP));
+            _out.writeByte(board.turn().ordinal());
+        }
+        _inGame = true;
+    }
+
+    /** Record MOVE, which must be legal on BOARD and about to be made
+     *  there, as the next move of the current game.  If MOVE's position
+     *  in the list of legal moves does not fit in a byte below the
+     *  markers (as can only happen in positions set up with far more
+     *  than 12 pieces on a side), ends the game there without a winner
+     *  and throws an IOException. */
+    void move(Board board, Move move) throws IOException {
+        assert _inGame;
+        int count = board.generateMoves(_buffer);
+        int packed = move.packed();
+        for (int i = 0; i < count; i += 1) {
+            if (_buffer[i] == packed) {
+                if (i >= START_INITIAL) {
+                    endGame(null);
+                    throw new IOException("too many moves to record: "
+                                          + count);
+                }
+                _out.writeByte(i);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("illegal move: " + move);
+    }
+
+    /** End the record of the current game, won by WINNER (null if no
+     *  one), and write it out. */
+    void endGame(Piece winner) throws IOException {
+        assert _inGame;
+        _out.writeByte(END);
+        _out.writeByte(winner == null ? EMP.ordinal() : winner.ordinal());
+        _out.flush();
+        _inGame = false;
+    }
+
+    /** Record a whole game starting from the position on BOARD, which is
+     *  unchanged on return, consisting of MOVES and won by WINNER (null
+     *  if no one). */
+    void writeGame(Board board, Move[] moves, Piece winner)
+        throws IOException {
+        startGame(board);
+        for (Move move : moves) {
+            move(board, move);
+            board.makeMove(move);
+        }
+        for (int i = 0; i < moves.length; i += 1) {
+            board.retract();
+        }
+        endGame(winner);
+    }
+
+    /** Return true iff a game has been started and not ended. */
+    boolean inGame() {
+        return _inGame;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _out.close();
+    }
+
+    /** Destination of records. */
+    private final DataOutputStream _out;
+    /** True iff a game has been started and not ended. */
+    private boolean _inGame;
+    /** Moves generated to find a move's position among them. */
+    private final int[] _buffer = new int[Board.MAX_MOVES];
+}
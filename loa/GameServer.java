@@ -0,0 +1,351 @@
+package loa;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/** A server that hosts many games at once, one for each TCP connection.
+ *  A client sends the lines it would type to the interactive program
+ *  (commands such as start, set, auto and dump, and moves), and is sent
+ *  whatever its Game prints in response, error messages included, but no
+ *  prompts.  A single thread does all the I/O on a Selector.  The lines of
+ *  each connection are processed in order, one at a time, on a fixed pool
+ *  of worker threads, which also make the moves of automated players, so
+ *  that a search never holds up I/O and the number of threads does not
+ *  grow with the number of games.  Commands that would touch files or
+ *  take memory or threads on the server are refused, as is perft, and
+ *  search depths and time limits are capped (MAX_DEPTH and MAX_TIME).
+ *  Each automated move is a task of its own, so that neither a line nor
+ *  a game between automated players holds a worker for long.
+ *  @author Maaz Uddin
+ */
+class GameServer implements Closeable {
+
+    /** Longest line accepted, in bytes.  A client sending a longer one is
+     *  disconnected. */
+    static final int MAX_LINE = 1024;
+
+    /** Most lines of a connection waiting to be processed.  A connection
+     *  with this many is not read until its Game catches up. */
+    static final int MAX_PENDING_LINES = 256;
+
+    /** Most connections waiting to be accepted. */
+    static final int BACKLOG = 1024;
+
+    /** Commands refused to clients. */
+    static final String[] REFUSED =
+        { "book", "record", "hash", "evalcache", "threads", "perft" };
+
+    /** Greatest search depth of served games. */
+    static final int MAX_DEPTH = 6;
+
+    /** Greatest time limit of served games, in seconds. */
+    static final double MAX_TIME = 5;
+
+    /** A server listening on PORT (any free port if 0), processing input
+     *  with WORKERS threads, and applying SETUP to the Game of each new
+     *  connection. */
+    GameServer(int port, int workers, Consumer<Game> setup)
+        throws IOException {
+        _setup = setup;
+        _selector = Selector.open();
+        _listener = ServerSocketChannel.open();
+        _listener.bind(new InetSocketAddress(port), BACKLOG);
+        _listener.configureBlocking(false);
+        _listener.register(_selector, SelectionKey.OP_ACCEPT);
+        _workers = Executors.newFixedThreadPool(workers);
+    }
+
+    /** Return the port on which this server listens. */
+    int port() {
+        return _listener.socket().getLocalPort();
+    }
+
+    /** Serve connections until close() is called. */
+    void serve() throws IOException {
+        try {
+            while (!_closed) {
+                _selector.select();
+                for (Session session = _changed.poll(); session != null;
+                     session = _changed.poll()) {
+                    session.update();
+                }
+                for (SelectionKey key : _selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Session session = (Session) key.attachment();
+                        if (key.isReadable()) {
+                            session.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            session.write();
+                        }
+                        session.update();
+                    }
+                }
+                _selector.selectedKeys().clear();
+            }
+        } catch (ClosedSelectorException excp) {
+            return;
+        } finally {
+            for (Session session : new HashSet<>(_sessions)) {
+                session.close();
+            }
+            _workers.shutdownNow();
+            _selector.close();
+        }
+    }
+
+    /** Stop serving and release the listening port. */
+    @Override
+    public void close() throws IOException {
+        _closed = true;
+        _listener.close();
+        _selector.wakeup();
+    }
+
+    /** Accept a pending connection, if any. */
+    private void accept() throws IOException {
+        SocketChannel channel = _listener.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        Session session = new Session(channel);
+        session._key = channel.register(_selector, SelectionKey.OP_READ,
+                                        session);
+        _sessions.add(session);
+    }
+
+    /** One connection and its Game.  The selector thread reads and writes
+     *  it; the worker threads run its Game, one line or automated move at
+     *  a time.  Lines waiting for the Game, output waiting for the
+     *  connection, and the flags saying whether the Game is running, are
+     *  shared by the two, under the Session's lock. */
+    private class Session implements Runnable {
+
+        /** A Session for CHANNEL. */
+        Session(SocketChannel channel) {
+            _channel = channel;
+            PrintStream out = new PrintStream(_output, true);
+            _game = new Game(new BufferedReader(Reader.nullReader()),
+                             out, out);
+            _game.setStepping(true);
+            _setup.accept(_game);
+            _game.limitSearch(MAX_DEPTH, MAX_TIME);
+        }
+
+        /** Read what the client has sent, queuing any complete lines for
+         *  the Game. */
+        void read() {
+            int n;
+            try {
+                n = _channel.read(_input);
+            } catch (IOException excp) {
+                close();
+                return;
+            }
+            if (n < 0) {
+                _eof = true;
+            }
+            int start = 0;
+            byte[] bytes = _input.array();
+            for (int i = 0; i < _input.position(); i += 1) {
+                if (bytes[i] == '\n') {
+                    offer(new String(bytes, start, i - start,
+                                     StandardCharsets.ISO_8859_1));
+                    start = i + 1;
+                }
+            }
+            if (_eof && start < _input.position()) {
+                offer(new String(bytes, start, _input.position() - start,
+                                 StandardCharsets.ISO_8859_1));
+                start = _input.position();
+            } else if (start == 0 && !_input.hasRemaining()) {
+                close();
+                return;
+            }
+            _input.limit(_input.position()).position(start);
+            _input.compact();
+        }
+
+        /** Send as much waiting output as the connection will take. */
+        void write() {
+            try {
+                synchronized (this) {
+                    while (!_outgoing.isEmpty()) {
+                        ByteBuffer buffer = _outgoing.peekFirst();
+                        _channel.write(buffer);
+                        if (buffer.hasRemaining()) {
+                            break;
+                        }
+                        _outgoing.pollFirst();
+                    }
+                }
+            } catch (IOException excp) {
+                close();
+            }
+        }
+
+        /** Adjust the operations the selector waits for on this
+         *  connection to the state of its input, output and Game, closing
+         *  the connection once its Game has quit or its input has ended,
+         *  and everything has been processed and sent. */
+        void update() {
+            if (!_key.isValid()) {
+                return;
+            }
+            synchronized (this) {
+                boolean done = _eof || _game.quitting();
+                if (done && !_running && _outgoing.isEmpty()
+                    && (_pending.isEmpty() || _game.quitting())) {
+                    close();
+                    return;
+                }
+                int ops = 0;
+                if (!done && _pending.size() < MAX_PENDING_LINES) {
+                    ops |= SelectionKey.OP_READ;
+                }
+                if (!_outgoing.isEmpty()) {
+                    ops |= SelectionKey.OP_WRITE;
+                }
+                _key.interestOps(ops);
+            }
+        }
+
+        /** Close the connection. */
+        void close() {
+            _sessions.remove(this);
+            _key.cancel();
+            try {
+                _channel.close();
+            } catch (IOException excp) {
+                /* Ignore errors on closing. */
+            }
+        }
+
+        /** Give the Game the input line LINE, after any lines before
+         *  it. */
+        private synchronized void offer(String line) {
+            if (line.endsWith("\r")) {
+                line = line.substring(0, line.length() - 1);
+            }
+            _pending.addLast(line);
+            if (!_running) {
+                _running = true;
+                _workers.execute(this);
+            }
+        }
+
+        /** Process the next waiting line or, if there is none, make the
+         *  next move of an automated player; and schedule the next line
+         *  or move, if any, as a separate task, so that a game between
+         *  automated players does not hold a worker throughout, and
+         *  lines such as stop take effect between its moves.  Run by a
+         *  worker thread. */
+        @Override
+        public void run() {
+            String line;
+            synchronized (this) {
+                line = _pending.pollFirst();
+            }
+            boolean step = line == null;
+            if (_key.isValid() && !_game.quitting()) {
+                try {
+                    if (step) {
+                        _game.step();
+                    } else if (refused(line)) {
+                        _game.error("command not available: %s%n",
+                                    _tokens.word(0));
+                    } else {
+                        _game.receive(line);
+                    }
+                } catch (RuntimeException excp) {
+                    _game.error("internal error: %s%n", excp);
+                }
+            }
+            synchronized (this) {
+                if (_output.size() > 0) {
+                    _outgoing.addLast(ByteBuffer.wrap(_output.toByteArray()));
+                    _output.reset();
+                }
+                if (!_key.isValid() || _game.quitting()
+                    || _pending.isEmpty() && !_game.machineToMove()) {
+                    _running = false;
+                } else {
+                    _workers.execute(this);
+                }
+            }
+            _changed.add(this);
+            _selector.wakeup();
+        }
+
+        /** Return true iff LINE is a command refused to clients. */
+        private boolean refused(String line) {
+            _tokens.reset(line);
+            return _tokens.find(0, REFUSED) != null;
+        }
+
+        /** The connection. */
+        private final SocketChannel _channel;
+        /** The connection's registration with the selector. */
+        private SelectionKey _key;
+        /** This connection's game. */
+        private final Game _game;
+        /** Splits lines to find refused commands. */
+        private final Tokenizer _tokens = new Tokenizer();
+        /** Bytes read and not yet made into lines. */
+        private final ByteBuffer _input = ByteBuffer.allocate(MAX_LINE);
+        /** True once the client has closed its side of the connection. */
+        private boolean _eof;
+        /** Lines waiting to be processed. */
+        private final ArrayDeque<String> _pending = new ArrayDeque<>();
+        /** True iff a line or move is being processed or is scheduled to
+         *  be. */
+        private boolean _running;
+        /** What the Game has printed while processing the current line
+         *  or move. */
+        private final ByteArrayOutputStream _output =
+            new ByteArrayOutputStream();
+        /** Output waiting to be sent. */
+        private final ArrayDeque<ByteBuffer> _outgoing = new ArrayDeque<>();
+    }
+
+    /** Prepares the Game of each new connection. */
+    private final Consumer<Game> _setup;
+    /** Multiplexes the listening socket and all connections. */
+    private final Selector _selector;
+    /** The listening socket. */
+    private final ServerSocketChannel _listener;
+    /** Threads that process input lines and make automated moves. */
+    private final ExecutorService _workers;
+    /** The open connections.  Used only by the selector thread. */
+    private final HashSet<Session> _sessions = new HashSet<>();
+    /** Connections whose state a worker has changed since the selector
+     *  last looked at them. */
+    private final ConcurrentLinkedQueue<Session> _changed =
+        new ConcurrentLinkedQueue<>();
+    /** True once close() has been called. */
+    private volatile boolean _closed;
+}
@@ -0,0 +1,107 @@
+package loa;
+
+import java.util.Arrays;
+
+/** A histogram of non-negative long values, such as latencies in
+ *  nanoseconds, in the manner of HdrHistogram: values below 2 * SUB are
+ *  counted exactly, and larger ones in buckets whose width is 1/SUB of
+ *  their magnitude, so that any percentile is reported to within about 3%
+ *  in a fixed, small amount of space, however widely values range.
+ *  Recording a value is a few arithmetic operations and an array
+ *  increment.
+ *  @author Maaz Uddin
+ */
+class Histogram {
+
+    /** Log2 of the number of buckets per power of two. */
+    static final int SUB_BITS = 5;
+
+    /** Number of buckets per power of two. */
+    static final int SUB = 1 << SUB_BITS;
+
+    /** Record VALUE, which must not be negative. */
+    void record(long value) {
+        assert value >= 0;
+        _counts[bucket(value)] += 1;
+        _count += 1;
+        _total += value;
+        _max = Math.max(_max, value);
+    }
+
+    /** Add the values recorded in OTHER to mine. */
+    void add(Histogram other) {
+        for (int i = 0; i < _counts.length; i += 1) {
+            _counts[i] += other._counts[i];
+        }
+        _count += other._count;
+        _total += other._total;
+        _max = Math.max(_max, other._max);
+    }
+
+    /** Forget all values recorded. */
+    void reset() {
+        Arrays.fill(_counts, 0);
+        _count = _total = _max = 0;
+    }
+
+    /** Return the number of values recorded. */
+    long count() {
+        return _count;
+    }
+
+    /** Return the sum of the values recorded. */
+    long total() {
+        return _total;
+    }
+
+    /** Return the mean of the values recorded, or 0 if none. */
+    double mean() {
+        return _count == 0 ? 0 : (double) _total / _count;
+    }
+
+    /** Return the greatest value recorded, or 0 if none. */
+    long max() {
+        return _max;
+    }
+
+    /** Return a value that at least a FRACTION (0 < FRACTION <= 1) of the
+     *  values recorded do not exceed (the top of the bucket of the value
+     *  of that rank), or 0 if none have been recorded. */
+    long percentile(double fraction) {
+        long rank = Math.max(1, (long) Math.ceil(fraction * _count));
+        long seen = 0;
+        for (int i = 0; i < _counts.length; i += 1) {
+            seen += _counts[i];
+            if (seen >= rank) {
+                return Math.min(_max, highest(i));
+            }
+        }
+        return 0;
+    }
+
+    /** Return the index of the bucket of VALUE >= 0. */
+    static int bucket(long value) {
+        int shift =
+            Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    /** Return the greatest value in bucket INDEX. */
+    static long highest(int index) {
+        int shift = Math.max(0, (index >> SUB_BITS) - 1);
+        long lowest = (long) (index - (shift << SUB_BITS)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /** Number of buckets needed for all non-negative longs. */
+    private static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+    /** Number of values recorded in each bucket. */
+    private final long[] _counts = new long[BUCKETS];
+    /** Number of values recorded. */
+    private long _count;
+    /** Sum of the values recorded. */
+    private long _total;
+    /** Greatest value recorded. */
+    private long _max;
+}
@@ -1,19 +1,20 @@
 package loa;
 
-/** A Player that prompts for moves and reads them from its Game.
+/** A Player whose moves are read by its Game from its input.
  *  @author Maaz Uddin
  *  */
 class HumanPlayer extends Player {
 
-    /** A HumanPlayer that plays the SIDE pieces in GAME.  It uses
-     *  GAME.getMove() as a source of moves.  */
+    /** A HumanPlayer that plays the SIDE pieces in GAME, which reads its
+     *  moves from input (see Game.receive).  */
     HumanPlayer(Piece side, Game game) {
         super(side, game);
     }
 
+    /** Return null: my moves arrive as input to my Game. */
     @Override
     Move makeMove() {
-        return getGame().getMove();
+        return null;
     }
 
 }
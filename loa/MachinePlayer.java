@@ -1,21 +1,16 @@
 package loa;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
 
-/** An automated Player.
+/** An automated Player.  While a human opponent is thinking, it may
+ *  ponder: guess the reply from the transposition table and search the
+ *  position that reply would leave, in a thread of its own, so that if
+ *  the guess is right its next move is ready (or, with a time limit, its
+ *  search starts from a table already full of that position).
  *  @author Maaz Uddin
  *  */
 class MachinePlayer extends Player {
 
-    /** A Hashset of all the moves that have been played. */
-    private HashSet<Move> _moves = new HashSet<>();
-
-    /** A counter of how many moves are made before clearing
-     *  the Hashset. */
-    private int hashCounter = 0;
-
     /** A MachinePlayer that plays the SIDE pieces in GAME. */
     MachinePlayer(Piece side, Game game) {
         super(side, game);
@@ -23,73 +18,214 @@ class MachinePlayer extends Player {
 
     @Override
     Move makeMove() {
-        if (hashCounter % 10 == 0) {
-            _moves.clear();
-            hashCounter = 0;
+        long start = System.nanoTime();
+        SearchStatistics statistics = getGame().statistics();
+        OpeningBook book = getGame().openingBook();
+        Move move = book == null ? null : book.lookup(getBoard());
+        if (move != null && getBoard().repeats(move)) {
+            move = null;
         }
-        hashCounter += 1;
-        return minMax(getBoard().turn(), 1, Integer.MIN_VALUE,
-                Integer.MAX_VALUE);
-    }
-
-    /** Return a Move using eval to determine the best possible move
-     *  for SIDE, at a certain DEPTH, with ALPHA and BETA values. */
-    Move minMax(Piece side, int depth, int alpha, int beta) {
-        Board board = new Board(getBoard());
-        Iterator<Move> iter = board.legalMoves();
-        Move currMove;
-        Move bestMove = null;
-        int currVal = 0;
-        int bestVal = Integer.MIN_VALUE;
-        while (iter.hasNext()) {
-            currMove = iter.next();
-            if (_moves.contains(currMove)) {
-                continue;
+        if (move != null) {
+            statistics.addBookMove(System.nanoTime() - start);
+        } else if (_ponderMove != null
+                   && _ponderDepth == getGame().searchDepth()
+                   && getGame().timeLimit() == 0
+                   && getBoard().snapshot().equals(_ponderPosition)) {
+            move = _ponderMove;
+            statistics.addPonderedMove(System.nanoTime() - start);
+        }
+        _ponderMove = null;
+        _ponderPosition = null;
+        if (move == null && EndgameSolver.nearConnected(getBoard())) {
+            if (_solver == null) {
+                _solver = new EndgameSolver();
             }
-            currVal = eval(currMove);
-            if (currVal > bestVal) {
-                bestVal = currVal;
-                bestMove = currMove;
+            move = _solver.solve(getBoard());
+            if (move != null) {
+                statistics.addSolvedMove(_solver.nodes(),
+                                         System.nanoTime() - start);
             }
         }
-        _moves.add(bestMove);
-        return bestMove;
+        if (move == null) {
+            move = findMove();
+            Searcher main = _searchers.get(0);
+            long nodes = 0, probes = 0, hits = 0;
+            for (int i = 0; i < getGame().threads(); i += 1) {
+                Searcher searcher = _searchers.get(i);
+                nodes += searcher.nodes();
+                probes += searcher.tableProbes();
+                hits += searcher.tableHits();
+            }
+            statistics.addSearchedMove(nodes, main.depth(),
+                                       main.branchingFactor(), probes, hits,
+                                       System.nanoTime() - start);
+        }
+        return move;
     }
 
-    /** Return an int that is the calculation of the distances of all
-     *  the pieces in a board from an ArrayList of PIECES. */
-    int piecesDist(ArrayList<ArrayList<Integer>> pieces) {
-        int sum = 0;
-        for (ArrayList<Integer> coords : pieces) {
-            for (ArrayList<Integer> coords2 : pieces) {
-                if (coords != coords2) {
-                    int x1 = coords.get(0);
-                    int y1 = coords.get(1);
-                    int x2 = coords2.get(0);
-                    int y2 = coords2.get(1);
-                    double dist = Math.sqrt(Math.pow((y2 - y1), 2)
-                            + Math.pow((x2 - x1), 2));
-                    sum += (int) dist;
-                }
+    /** Ponder, if the opponent is to move, the game is not over, and the
+     *  table suggests a reply, discarding the result of any earlier
+     *  pondering.  With a fixed search depth, a ponder search that reaches
+     *  that depth yields my next move if the opponent replies as guessed
+     *  and the depth is the same then. */
+    @Override
+    void startPondering() {
+        Board board = getBoard();
+        Game game = getGame();
+        if (_ponderThread != null) {
+            return;
+        }
+        _ponderPosition = null;
+        _ponderMove = null;
+        if (board.turn() == side() || board.gameOver()) {
+            return;
+        }
+        TranspositionTable table = game.transpositionTable();
+        long entry = table.probe(board.zobristKey());
+        if (entry == TranspositionTable.MISS) {
+            return;
+        }
+        Move guess = Move.fromIndex(TranspositionTable.move(entry), board);
+        if (!board.isLegal(guess)) {
+            return;
+        }
+        Board next = BoardPool.acquire(board);
+        next.makeMove(guess);
+        Board.Snapshot position = next.snapshot();
+        boolean over = next.gameOver();
+        if (!over) {
+            if (_ponderer == null) {
+                _ponderer = new Searcher();
             }
+            _ponderer.setPosition(next, table, game.evalCache());
         }
-        return sum;
+        BoardPool.release(next);
+        if (over) {
+            return;
+        }
+        _ponderPosition = position;
+        int depth =
+            game.timeLimit() > 0 ? Searcher.MAX_DEPTH : game.searchDepth();
+        _ponderThread = new Thread(() -> {
+            Move best = _ponderer.iterate(1, depth, 0);
+            _ponderDepth = _ponderer.depth();
+            _ponderMove = best;
+        });
+        _ponderThread.setDaemon(true);
+        _ponderThread.start();
+        Reporter.debug(1, "%s pondering after %s", side().fullName(), guess);
     }
 
-    /** Return an int that represents how good a MOVE is in
-     *  the current board. */
-    int eval(Move move) {
-        Board board = new Board(getBoard());
-        int val;
-        board.makeMove(move);
-        if (board.piecesContiguous(board.turn())) {
-            val = Integer.MAX_VALUE;
-        } else {
-            int humanMove = piecesDist(board.arrayofCoordinates(board.turn()));
-            int machineMove = piecesDist(board.arrayofCoordinates
-                    (board.turn().opposite()));
-            val = humanMove - machineMove;
-        }
-        return val;
+    @Override
+    void stopPondering() {
+        if (_ponderThread == null) {
+            return;
+        }
+        _ponderer.stop();
+        try {
+            _ponderThread.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+        _ponderThread = null;
+        Reporter.debug(1, "%s pondered to depth %d (%d nodes)",
+                       side().fullName(), _ponderer.depth(),
+                       _ponderer.nodes());
     }
+
+    /** Wait until pondering begun with a fixed search depth (and not yet
+     *  stopped) has searched to that depth and ended of its own accord.
+     *  Returns at once if not pondering.  For testing. */
+    void awaitPondering() throws InterruptedException {
+        Thread thread = _ponderThread;
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    /** Return the best move for the side to move on the game board, or
+     *  null if there are no legal moves.  Returns to earlier positions of
+     *  the game are valued as Searcher.REPEATED_VALUE.  The search deepens
+     *  up to the game's search depth, or, if the game has a time limit,
+     *  until that much time has passed.  If the game allows
+     *  more than one thread, helper threads search the same position at
+     *  staggered depths until the main search finishes, sharing results
+     *  through the transposition table (so-called "lazy SMP"). */
+    private Move findMove() {
+        Game game = getGame();
+        TranspositionTable table = game.transpositionTable();
+        table.newSearch();
+        while (_searchers.size() < game.threads()) {
+            _searchers.add(new Searcher());
+        }
+        int threads = game.threads();
+        for (int i = 0; i < threads; i += 1) {
+            _searchers.get(i).setPosition(getBoard(), table,
+                                          game.evalCache());
+        }
+
+        Thread[] helpers = new Thread[threads - 1];
+        for (int i = 1; i < threads; i += 1) {
+            Searcher helper = _searchers.get(i);
+            int firstDepth = 1 + i % 2;
+            helpers[i - 1] = new Thread(() ->
+                helper.iterate(firstDepth, Searcher.MAX_DEPTH, 0));
+            helpers[i - 1].setDaemon(true);
+            helpers[i - 1].start();
+        }
+
+        int maxDepth = game.timeLimit() > 0
+            ? Searcher.MAX_DEPTH : game.searchDepth();
+        double seconds = game.timeLimit() > 0
+            ? game.timeLimit() : game.maxTimeLimit();
+        long budget =
+            Double.isInfinite(seconds) ? 0 : (long) (seconds * 1e9);
+        Move best = _searchers.get(0).iterate(1, maxDepth, budget);
+
+        for (int i = 1; i < threads; i += 1) {
+            _searchers.get(i).stop();
+        }
+        for (Thread helper : helpers) {
+            try {
+                helper.join();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (int i = 0; i < threads; i += 1) {
+            Searcher searcher = _searchers.get(i);
+            Reporter.debug(1, "%s thread %d: %d nodes, %.1f%% of cutoffs "
+                           + "by first move", side().fullName(), i,
+                           searcher.nodes(), 100 * searcher.moveOrderer()
+                           .firstMoveCutoffRate());
+        }
+        EvalCache cache = game.evalCache();
+        if (cache != null) {
+            Reporter.debug(1, "eval cache: %d hits, %d misses",
+                           cache.hits(), cache.misses());
+        }
+        return best;
+    }
+
+    /** Solver for positions near the end of the game, created when first
+     *  needed (it has a table of its own). */
+    private EndgameSolver _solver;
+
+    /** Searchers for the main search thread (first) and its helpers. */
+    private final ArrayList<Searcher> _searchers = new ArrayList<>();
+
+    /** Searcher of the position expected after the opponent's reply,
+     *  created when first needed (its move buffers are large). */
+    private Searcher _ponderer;
+    /** Thread running _ponderer, or null if not pondering. */
+    private Thread _ponderThread;
+    /** Position pondered, or null. */
+    private Board.Snapshot _ponderPosition;
+    /** Best move found for _ponderPosition by pondering, or null.
+     *  Written by the pondering thread before it ends. */
+    private Move _ponderMove;
+    /** Depth of the last complete iteration of the search that found
+     *  _ponderMove, which is played only if that is the search depth
+     *  in force when it is to be played. */
+    private int _ponderDepth;
 }
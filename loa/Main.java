@@ -1,9 +1,23 @@
 package loa;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import ucb.util.CommandArgs;
 
@@ -23,14 +37,67 @@ public class Main {
      *                      meesages up to level LEVEL.  0 indicates no
      *                      debugging messages (the default).  (This option
      *                      is not part of the spec.)
+     *      --depth=N       Make automated players search N plies ahead.
+     *      --hash=N        Give automated players a transposition table of
+     *                      N megabytes.
+     *      --evalcache=N   Let automated players cache N evaluations.
+     *      --book=FILE     Let automated players play from the opening
+     *                      book in FILE.
+     *      --record=FILE   Append the games played to the game records in
+     *                      FILE.
+     *      --stats=FILE    At the end of each game, append statistics of
+     *                      the automated players' moves to FILE, as a line
+     *                      of JSON.
+     *      --time=S        Let automated players search for S seconds per
+     *                      move, as deep as time allows.
+     *      --threads=N     Let automated players search with N threads.
+     *      --ponder        Let automated players think while waiting for
+     *                      a human player's move (not with --server).
+     *      --server=PORT   Instead of playing one game on the terminal,
+     *                      serve a game to each connection to PORT (see
+     *                      GameServer).
+     *      --replay=PATH   Instead of playing on the terminal, run the
+     *                      script of input in file PATH, or each .in file
+     *                      in directory PATH, without prompts, printing
+     *                      the output of each in turn.
+     *      --workers=N     Process the input of all served games, or run
+     *                      replayed scripts, with N threads (default: one
+     *                      per processor).
      */
     public static void main(String... args) {
         CommandArgs options =
-            new CommandArgs("--debug=(\\d+){0,1} --display{0,1}", args);
+            new CommandArgs("--debug=(\\d+){0,1} --display{0,1} "
+                            + "--depth=([1-9]\\d*){0,1} "
+                            + "--hash=([1-9]\\d*){0,1} "
+                            + "--evalcache=(\\d+){0,1} "
+                            + "--book=(.+){0,1} "
+                            + "--record=(.+){0,1} "
+                            + "--stats=(.+){0,1} "
+                            + "--time=(\\d+(\\.\\d*)?|\\.\\d+){0,1} "
+                            + "--threads=([1-9]\\d*){0,1} "
+                            + "--ponder{0,1} "
+                            + "--server=(\\d+){0,1} "
+                            + "--replay=(.+){0,1} "
+                            + "--workers=([1-9]\\d*){0,1}", args);
 
         if (!options.ok()) {
             usage();
         }
+        if (options.contains("--debug")) {
+            Reporter.setMessageLevel(options.getInt("--debug"));
+        }
+        if (options.contains("--depth")
+            && options.getInt("--depth") > Searcher.MAX_DEPTH) {
+            error(1, "--depth must be at most %d.%n", Searcher.MAX_DEPTH);
+        }
+        if (options.contains("--server")) {
+            serve(options);
+            return;
+        }
+        if (options.contains("--replay")) {
+            replay(options);
+            return;
+        }
         System.out.printf("Lines of Action.  Version %s.%nType ? for help.%n",
                           VERSION);
 
@@ -38,12 +105,198 @@ public class Main {
             error(1, "--display not supported.");
         }
 
-        if (options.contains("--debug")) {
-            Reporter.setMessageLevel(options.getInt("--debug"));
-        }
-
         Game game = new Game();
+        configure(game, options, statisticsLog(options));
+        if (options.contains("--hash")) {
+            game.setHashSize(options.getInt("--hash"));
+        }
+        if (options.contains("--evalcache")) {
+            game.setEvalCacheSize(options.getInt("--evalcache"));
+        }
+        if (options.contains("--book")) {
+            game.setOpeningBook(readBook(options.getLast("--book")));
+        }
+        if (options.contains("--record")) {
+            try {
+                game.setRecorder(
+                    new GameRecordWriter(
+                        Files.newOutputStream(
+                            Paths.get(options.getLast("--record")),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.APPEND)));
+            } catch (IOException excp) {
+                error(1, "cannot write records: %s%n", excp.getMessage());
+            }
+        }
+        game.setPondering(options.contains("--ponder"));
         game.play();
+        game.setRecorder(null);
+    }
+
+    /** Serve games to network clients as directed by OPTIONS (see main).
+     *  All games share one transposition table, evaluation cache and
+     *  opening book. */
+    private static void serve(CommandArgs options) {
+        if (options.contains("--display") || options.contains("--record")) {
+            error(1, "--display and --record not supported with --server.");
+        }
+        TranspositionTable table =
+            new TranspositionTable(options.contains("--hash")
+                                   ? options.getInt("--hash")
+                                   : Game.DEFAULT_HASH_SIZE);
+        EvalCache cache =
+            options.contains("--evalcache")
+            && options.getInt("--evalcache") > 0
+            ? new EvalCache(options.getInt("--evalcache")) : null;
+        OpeningBook book = options.contains("--book")
+            ? readBook(options.getLast("--book")) : null;
+        PrintStream statistics = statisticsLog(options);
+        int workers = options.contains("--workers")
+            ? options.getInt("--workers")
+            : Runtime.getRuntime().availableProcessors();
+        try {
+            GameServer server =
+                new GameServer(options.getInt("--server"), workers, game -> {
+                    configure(game, options, statistics);
+                    game.setTranspositionTable(table);
+                    if (cache != null) {
+                        game.setEvalCache(cache);
+                    }
+                    game.setOpeningBook(book);
+                });
+            System.out.printf("Lines of Action server.  Version %s.  "
+                              + "Listening on port %d.%n",
+                              VERSION, server.port());
+            server.serve();
+        } catch (IOException | IllegalArgumentException excp) {
+            error(1, "cannot serve: %s%n", excp.getMessage());
+        }
+    }
+
+    /** Run the scripts named by the --replay option in OPTIONS (see
+     *  main), each in its own Game, several at once, printing the output
+     *  of each (error messages included) on the standard output when it
+     *  and all those before it have finished.  When there is more than
+     *  one script, the output of each is headed by its name.  Exits with
+     *  code 1 if any script cannot be read. */
+    private static void replay(CommandArgs options) {
+        if (options.contains("--display") || options.contains("--record")
+            || options.contains("--ponder")
+            || options.contains("--server")) {
+            error(1, "--display, --record, --ponder and --server not "
+                  + "supported with --replay.");
+        }
+        List<Path> scripts = scripts(Paths.get(options.getLast("--replay")));
+        OpeningBook book = options.contains("--book")
+            ? readBook(options.getLast("--book")) : null;
+        PrintStream statistics = statisticsLog(options);
+        ExecutorService workers =
+            Executors.newFixedThreadPool(
+                options.contains("--workers")
+                ? options.getInt("--workers")
+                : Runtime.getRuntime().availableProcessors());
+        List<Future<String>> outputs = new ArrayList<>();
+        for (Path script : scripts) {
+            outputs.add(workers.submit(() -> {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                PrintStream out = new PrintStream(output);
+                try (BufferedReader input = Files.newBufferedReader(script)) {
+                    Game game = new Game(input, out, out);
+                    configure(game, options, statistics);
+                    if (options.contains("--hash")) {
+                        game.setHashSize(options.getInt("--hash"));
+                    }
+                    if (options.contains("--evalcache")) {
+                        game.setEvalCacheSize(options.getInt("--evalcache"));
+                    }
+                    game.setOpeningBook(book);
+                    game.replay();
+                }
+                out.flush();
+                return output.toString();
+            }));
+        }
+        workers.shutdown();
+        boolean failed = false;
+        for (int i = 0; i < scripts.size(); i += 1) {
+            if (scripts.size() > 1) {
+                System.out.printf("==> %s <==%n", scripts.get(i));
+            }
+            try {
+                System.out.print(outputs.get(i).get());
+            } catch (ExecutionException excp) {
+                System.out.flush();
+                error("%s: %s%n", scripts.get(i), excp.getCause());
+                failed = true;
+            } catch (InterruptedException excp) {
+                error(1, "interrupted%n");
+            }
+        }
+        System.out.flush();
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /** Return PATH if it is not a directory, and otherwise the .in files
+     *  in it, in order of their names. */
+    private static List<Path> scripts(Path path) {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            return files.filter(file -> file.toString().endsWith(".in")
+                                && !Files.isDirectory(file))
+                .sorted().collect(Collectors.toList());
+        } catch (IOException excp) {
+            error(1, "cannot read scripts: %s%n", excp.getMessage());
+            return null;
+        }
+    }
+
+    /** Apply the search settings in OPTIONS (see main) to GAME, logging
+     *  statistics to STATISTICS (if not null). */
+    private static void configure(Game game, CommandArgs options,
+                                  PrintStream statistics) {
+        game.setStatisticsLog(statistics);
+        if (options.contains("--depth")) {
+            game.setSearchDepth(options.getInt("--depth"));
+        }
+        if (options.contains("--time")) {
+            game.setTimeLimit(options.getDouble("--time"));
+        }
+        if (options.contains("--threads")) {
+            game.setThreads(options.getInt("--threads"));
+        }
+    }
+
+    /** Return a stream appending to the file named by the --stats option
+     *  in OPTIONS, or null if there is no such option, exiting with an
+     *  error if the file cannot be opened. */
+    private static PrintStream statisticsLog(CommandArgs options) {
+        if (!options.contains("--stats")) {
+            return null;
+        }
+        try {
+            return new PrintStream(
+                Files.newOutputStream(Paths.get(options.getLast("--stats")),
+                                      StandardOpenOption.CREATE,
+                                      StandardOpenOption.APPEND), true);
+        } catch (IOException excp) {
+            error(1, "cannot write statistics: %s%n", excp.getMessage());
+            return null;
+        }
+    }
+
+    /** Return the opening book in the file named NAME, exiting with an
+     *  error if it cannot be read. */
+    private static OpeningBook readBook(String name) {
+        try {
+            return new OpeningBook(Paths.get(name));
+        } catch (IOException excp) {
+            error(1, "cannot read book: %s%n", excp.getMessage());
+            return null;
+        }
     }
 
     /** Print brief description of the command-line format. */
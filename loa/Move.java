@@ -15,24 +15,36 @@ class Move {
      * work. */
 
     /** Return a move on BOARD denoted by a prefix of S (after trimming),
-     *  or null if S denotes no valid move. */
+     *  or null if S denotes no valid move.  Looks at S in place, without
+     *  copying it or using regular expressions, since it is called on
+     *  every line of input. */
     static Move create(String s, Board board) {
-        s = s.trim();
-        if (s.matches("[a-h][1-9]-[a-h][1-9]\\b.*")) {
-            String p1 = s.substring(0, 2);
-            String p2 = s.substring(3);
-            return create(board.col(p1), board.row(p1),
-                          board.col(p2), board.row(p2), board);
-        } else {
+        int k;
+        for (k = 0; k < s.length() && s.charAt(k) <= ' '; k += 1) {
+            continue;
+        }
+        int from = Board.sq(s, k), to = Board.sq(s, k + 3);
+        if (from < 0 || to < 0 || s.charAt(k + 2) != '-'
+            || k + 5 < s.length() && isWordChar(s.charAt(k + 5))) {
             return null;
         }
+        return create(Board.col(from), Board.row(from),
+                      Board.col(to), Board.row(to), board);
+    }
+
+    /** Return true iff C is a letter, digit or underscore, which may not
+     *  immediately follow a move. */
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
     }
 
     /** Return a move of the piece at COLUMN0, ROW0 to COLUMN1, ROW1, on
-     *  BOARD or null if this move is always invalid. */
+     *  BOARD or null if this move is always invalid (including when
+     *  there is no piece at COLUMN0, ROW0). */
     static Move create(int column0, int row0, int column1, int row1,
                        Board board) {
-        if (!inBounds(column0, row0) || !inBounds(column1, row1)) {
+        if (!inBounds(column0, row0) || !inBounds(column1, row1)
+            || board.get(column0, row0) == EMP) {
             return null;
         }
         int moved = board.get(column0, row0).ordinal();
@@ -48,6 +60,28 @@ class Move {
                       board);
     }
 
+    /** Return the move denoted by PACKED, as returned by packed(), or
+     *  null if PACKED denotes no move. */
+    static Move fromPacked(int packed) {
+        return _packedMoves[packed];
+    }
+
+    /** Return the packed form of a move by a MOVED piece (BP or WP) from
+     *  square index SQ0 to square index SQ1, capturing an opposing piece
+     *  iff CAPTURE.  See packed(). */
+    static int pack(int sq0, int sq1, Piece moved, boolean capture) {
+        return sq0 * SQUARES + sq1 | (capture ? CAPTURE : 0)
+            | (moved == WP ? WHITE_MOVED : 0);
+    }
+
+    /** Return the move on BOARD between the squares identified by INDEX
+     *  (as returned by index()), or null if this move is always
+     *  invalid. */
+    static Move fromIndex(int index, Board board) {
+        int sq0 = index / SQUARES, sq1 = index % SQUARES;
+        return create(col(sq0), row(sq0), col(sq1), row(sq1), board);
+    }
+
     /** A new Move of the piece at COL0, ROW0 to COL1, ROW1. MOVED is the
      *  piece being moved from COL0, ROW0, and REPLACED is the piece (or EMP)
      *  that it replaces. */
@@ -64,6 +98,7 @@ class Move {
         _row1 = row1;
         _moved = moved;
         _replaced = replaced;
+        _packedMoves[packed()] = this;
     }
 
     /** Return the column at which this move starts, as an index in 1--8. */
@@ -102,6 +137,20 @@ class Move {
         return Math.max(Math.abs(_row1 - _row0), Math.abs(_col1 - _col0));
     }
 
+    /** Return a number, 0 < n < SQUARES * SQUARES, identifying the
+     *  starting and ending squares of this move.  See fromIndex. */
+    int index() {
+        return sq(_col0, _row0) * SQUARES + sq(_col1, _row1);
+    }
+
+    /** Return a number, 0 < n < PACKED_LIMIT, that identifies this move,
+     *  including the pieces moved and captured: index() plus CAPTURE if
+     *  this move captures and WHITE_MOVED if it moves a white piece. */
+    int packed() {
+        return pack(sq(_col0, _row0), sq(_col1, _row1), _moved,
+                    _replaced != EMP);
+    }
+
     /** Return true IFF (C, R) denotes a square on the board, that is if
      *  1 <= C <= M, 1 <= R <= M. */
     private static boolean inBounds(int c, int r) {
@@ -114,6 +163,13 @@ class Move {
                              (char) (_col1 - 1 + 'a'), _row1);
     }
 
+    /** Flag included in the packed form of a capturing move. */
+    static final int CAPTURE = SQUARES * SQUARES;
+    /** Flag included in the packed form of a move of a white piece. */
+    static final int WHITE_MOVED = 2 * CAPTURE;
+    /** A bound on the packed forms of all moves. */
+    static final int PACKED_LIMIT = 2 * WHITE_MOVED;
+
     /** Column and row numbers of starting and ending points. */
     private final int _col0, _row0, _col1, _row1;
     /** Piece moved. */
@@ -126,6 +182,9 @@ class Move {
     private static Move[][][][][][] _moves =
         new Move[M + 1][M + 1][M + 1][M + 1][2][3];
 
+    /** All possible Moves, indexed by their packed forms. */
+    private static Move[] _packedMoves = new Move[PACKED_LIMIT];
+
     static {
         for (int m = 0; m <= 1; m += 1) {
             for (int r = 0; r <= 2; r += 1) {
@@ -0,0 +1,142 @@
+package loa;
+
+import java.util.Arrays;
+
+import static loa.Searcher.MAX_DEPTH;
+
+/** The order in which a Searcher tries the moves from a position.  The
+ *  sooner a search tries a move good enough to cut off its siblings, the
+ *  fewer positions it visits, so moves are tried in order of how likely
+ *  they are to do so: the move from the transposition table (which the
+ *  Searcher tries itself, before generating moves), then captures, then
+ *  the "killer" moves that most recently caused cutoffs at the same ply
+ *  of the search, and then the rest according to how often and how deep
+ *  each move (identified by its packed form, and so by its squares and
+ *  side) has caused cutoffs in earlier searches: the "history
+ *  heuristic".  Moves are selected lazily, so that a search that is cut
+ *  off early pays for little more than the moves it tries.
+ *  @author Maaz Uddin
+ */
+class MoveOrderer {
+
+    /** Forget the killer moves, and make the history of earlier searches
+     *  count for half as much as that of searches to come. */
+    void newSearch() {
+        for (int[] killers : _killers) {
+            Arrays.fill(killers, NO_MOVE);
+        }
+        for (int i = 0; i < _history.length; i += 1) {
+            _history[i] >>= 1;
+        }
+    }
+
+    /** Prepare to select from MOVES[0 .. COUNT-1], the packed moves
+     *  generated at PLY. */
+    void score(int[] moves, int count, int ply) {
+        int[] scores = _scores[ply];
+        int killer0 = _killers[ply][0], killer1 = _killers[ply][1];
+        for (int i = 0; i < count; i += 1) {
+            int move = moves[i];
+            if ((move & Move.CAPTURE) != 0) {
+                scores[i] = CAPTURE_SCORE + _history[move];
+            } else if (move == killer0) {
+                scores[i] = KILLER_SCORE + 1;
+            } else if (move == killer1) {
+                scores[i] = KILLER_SCORE;
+            } else {
+                scores[i] = _history[move];
+            }
+        }
+    }
+
+    /** Assuming MOVES[0 .. I-1] have been selected from MOVES[0 ..
+     *  COUNT-1], as scored by score at PLY, move the best of the rest to
+     *  MOVES[I] and return it. */
+    int select(int[] moves, int i, int count, int ply) {
+        int[] scores = _scores[ply];
+        int best = i;
+        for (int j = i + 1; j < count; j += 1) {
+            if (scores[j] > scores[best]) {
+                best = j;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[i];
+        moves[i] = move;
+        scores[best] = scores[i];
+        return move;
+    }
+
+    /** Record that searching packed move MOVE DEPTH plies deep at PLY
+     *  caused a cutoff, after SEARCHED moves (including MOVE) had been
+     *  tried. */
+    void cutoff(int move, int depth, int ply, int searched) {
+        _cutoffs += 1;
+        if (searched == 1) {
+            _firstMoveCutoffs += 1;
+        }
+        if ((move & Move.CAPTURE) != 0) {
+            return;
+        }
+        int[] killers = _killers[ply];
+        if (killers[0] != move) {
+            killers[1] = killers[0];
+            killers[0] = move;
+        }
+        _history[move] += depth * depth;
+        if (_history[move] > HISTORY_LIMIT) {
+            for (int i = 0; i < _history.length; i += 1) {
+                _history[i] >>= 1;
+            }
+        }
+    }
+
+    /** Return the number of cutoffs recorded since resetStatistics. */
+    long cutoffs() {
+        return _cutoffs;
+    }
+
+    /** Return the number of those cutoffs caused by the first move
+     *  tried. */
+    long firstMoveCutoffs() {
+        return _firstMoveCutoffs;
+    }
+
+    /** Return the fraction of cutoffs caused by the first move tried, or
+     *  0 if there have been none: a measure of the quality of the
+     *  ordering. */
+    double firstMoveCutoffRate() {
+        return _cutoffs == 0 ? 0 : (double) _firstMoveCutoffs / _cutoffs;
+    }
+
+    /** Reset the counts of cutoffs to 0. */
+    void resetStatistics() {
+        _cutoffs = _firstMoveCutoffs = 0;
+    }
+
+    /** Marks an empty killer slot (the packed form of no legal move). */
+    private static final int NO_MOVE = 0;
+
+    /** Scores of captures and killer moves, greater than any history
+     *  score. */
+    private static final int CAPTURE_SCORE = 1 << 26,
+        KILLER_SCORE = 1 << 25;
+
+    /** History scores are halved when one exceeds this. */
+    private static final int HISTORY_LIMIT = 1 << 24;
+
+    /** Scores of the moves at each ply, parallel to the move buffers. */
+    private final int[][] _scores =
+        new int[MAX_DEPTH + 1][Board.MAX_MOVES];
+
+    /** The last two distinct quiet moves to cause a cutoff at each ply,
+     *  most recent first. */
+    private final int[][] _killers = new int[MAX_DEPTH + 1][2];
+
+    /** Sum of the squared depths of the cutoffs caused by each quiet
+     *  move, indexed by packed move. */
+    private final int[] _history = new int[Move.PACKED_LIMIT];
+
+    /** Number of cutoffs, and of those caused by the first move tried. */
+    private long _cutoffs, _firstMoveCutoffs;
+}
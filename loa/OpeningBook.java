@@ -0,0 +1,108 @@
+package loa;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** A read-only book of opening moves: for each of a number of positions
+ *  (identified by Board.zobristKey()), moves to play there with weights.
+ *  A book is a file holding a header (MAGIC and the number of entries)
+ *  followed by entries of ENTRY_BYTES bytes each, a position key, a move
+ *  (as Move.index()) and a weight, sorted by key and, for each key, by
+ *  decreasing weight.  The file is mapped into memory rather than read,
+ *  so that opening a book costs nothing, and looking up a position is a
+ *  binary search of the mapped entries.  A book may be shared by any
+ *  number of threads.  Books are built by BookBuilder.
+ *  @author Maaz Uddin
+ */
+class OpeningBook {
+
+    /** First four bytes of a book file ("LOAB"). */
+    static final int MAGIC = 0x4c4f4142;
+
+    /** Size of the header and of an entry in bytes. */
+    static final int HEADER_BYTES = 8, ENTRY_BYTES = 16;
+
+    /** The book in file FILE.  Throws IOException if FILE cannot be
+     *  read or is not a book. */
+    OpeningBook(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("not an opening book: " + file);
+            }
+            _entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        _size = _entries.getInt(4);
+        if (_entries.getInt(0) != MAGIC || _size < 0
+            || HEADER_BYTES + (long) _size * ENTRY_BYTES
+               != _entries.capacity()) {
+            throw new IOException("not an opening book: " + file);
+        }
+    }
+
+    /** Return the number of entries in this book. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the legal move with the greatest weight for the position
+     *  on BOARD, or null if the book has none. */
+    Move lookup(Board board) {
+        long key = board.zobristKey();
+        int lo = 0, hi = _size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (key(mid) < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int i = lo; i < _size && key(i) == key; i += 1) {
+            Move move = Move.fromIndex(move(i), board);
+            if (board.isLegal(move)) {
+                return move;
+            }
+        }
+        return null;
+    }
+
+    /** Write a book to FILE whose entries are KEYS[i], MOVES[i] and
+     *  WEIGHTS[i], for 0 <= i < COUNT, in order.  The entries must be in
+     *  the order described above. */
+    static void write(Path file, long[] keys, int[] moves, int[] weights,
+                      int count) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(file);
+             DataOutputStream out =
+                 new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(count);
+            for (int i = 0; i < count; i += 1) {
+                out.writeLong(keys[i]);
+                out.writeInt(moves[i]);
+                out.writeInt(weights[i]);
+            }
+        }
+    }
+
+    /** Return the key of entry I. */
+    private long key(int i) {
+        return _entries.getLong(HEADER_BYTES + i * ENTRY_BYTES);
+    }
+
+    /** Return the move of entry I. */
+    private int move(int i) {
+        return _entries.getInt(HEADER_BYTES + i * ENTRY_BYTES + 8);
+    }
+
+    /** The mapped book file. */
+    private final MappedByteBuffer _entries;
+    /** Number of entries. */
+    private final int _size;
+}
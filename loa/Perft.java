@@ -0,0 +1,87 @@
+package loa;
+
+import java.io.PrintStream;
+import java.util.Iterator;
+
+/** Move-generation verification and throughput measurement ("perft"):
+ *  counts the positions reached by every sequence of legal moves of a
+ *  given length from some position, as enumerated by Board.legalMoves().
+ *  A finished game (one in which some side's pieces are contiguous), or
+ *  a position with no legal moves, ends its sequence early and counts
+ *  as one position.
+ *  @author Maaz Uddin
+ */
+class Perft {
+
+    /** Count the positions DEPTH plies after the initial position and
+     *  report them on the standard output.  ARGS are an optional
+     *  --divide, which also reports the count under each first move,
+     *  followed by DEPTH. */
+    public static void main(String... args) {
+        boolean divide = args.length == 2 && args[0].equals("--divide");
+        if (args.length != (divide ? 2 : 1)) {
+            usage();
+        }
+        try {
+            int depth = Integer.parseInt(args[args.length - 1]);
+            if (depth < 0) {
+                usage();
+            }
+            run(new Board(), depth, divide, System.out);
+        } catch (NumberFormatException excp) {
+            usage();
+        }
+    }
+
+    /** Print a usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java loa.Perft [--divide] DEPTH");
+        System.exit(1);
+    }
+
+    /** Return the number of positions DEPTH plies after BOARD, which is
+     *  unchanged on return. */
+    static long count(Board board, int depth) {
+        if (depth == 0 || board.gameOver()) {
+            return 1;
+        }
+        Iterator<Move> moves = board.legalMoves();
+        if (!moves.hasNext()) {
+            return 1;
+        }
+        long total = 0;
+        while (moves.hasNext()) {
+            board.makeMove(moves.next());
+            total += count(board, depth - 1);
+            board.retract();
+        }
+        return total;
+    }
+
+    /** Count the positions DEPTH plies after BOARD, printing the total,
+     *  the time taken and the rate on OUT.  If DIVIDE, also print the
+     *  count after each legal move from BOARD.  BOARD is unchanged on
+     *  return. */
+    static void run(Board board, int depth, boolean divide,
+                    PrintStream out) {
+        long start = System.nanoTime();
+        long total;
+        if (divide && depth > 0 && !board.gameOver()) {
+            total = 0;
+            for (Iterator<Move> moves = board.legalMoves();
+                 moves.hasNext();) {
+                Move move = moves.next();
+                board.makeMove(move);
+                long nodes = count(board, depth - 1);
+                board.retract();
+                out.printf("%s: %d%n", move, nodes);
+                total += nodes;
+            }
+        } else {
+            total = count(board, depth);
+        }
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        out.printf("perft %d: %d nodes in %.3f s (%.0f nodes/s)%n",
+                   depth, total, seconds, total / seconds);
+    }
+}
@@ -14,9 +14,20 @@ public abstract class Player {
     }
 
     /** Return my next move from the current position in getBoard(), assuming
-     *  that side() == getBoard.turn(). */
+     *  that side() == getBoard.turn(), or null if my Game is to wait for it
+     *  as input. */
     abstract Move makeMove();
 
+    /** Begin thinking, if I can, in the background while my opponent's
+     *  move is awaited.  Does nothing by default. */
+    void startPondering() {
+    }
+
+    /** Stop any thinking begun by startPondering, before the game goes
+     *  on. */
+    void stopPondering() {
+    }
+
     /** Return which side I'm playing. */
     Piece side() {
         return _side;
@@ -0,0 +1,215 @@
+package loa;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/** Statistics of the moves chosen by automated players: how each was
+ *  found (from the opening book, by pondering, by the endgame solver or
+ *  by search), how long each decision took and, for searched moves, the
+ *  positions visited, the depth reached, the effective branching factor
+ *  and how often the transposition table had an entry.  Distributions
+ *  are kept in Histograms.
+ *  @author Maaz Uddin
+ */
+class SearchStatistics {
+
+    /** Record a move taken from the opening book after NANOS
+     *  nanoseconds. */
+    void addBookMove(long nanos) {
+        _bookMoves += 1;
+        _latency.record(nanos);
+    }
+
+    /** Record a move found while pondering, taken after NANOS
+     *  nanoseconds. */
+    void addPonderedMove(long nanos) {
+        _ponderedMoves += 1;
+        _latency.record(nanos);
+    }
+
+    /** Record a move found by the endgame solver, visiting NODES
+     *  positions, after NANOS nanoseconds. */
+    void addSolvedMove(long nodes, long nanos) {
+        _solvedMoves += 1;
+        _solverNodes += nodes;
+        _latency.record(nanos);
+    }
+
+    /** Record a move found by a search that visited NODES positions,
+     *  completed an iteration of DEPTH plies with effective branching
+     *  factor BRANCHING (see Searcher.branchingFactor; 0 if unknown), and
+     *  probed the transposition table PROBES times, finding an entry HITS
+     *  times, after NANOS nanoseconds. */
+    void addSearchedMove(long nodes, int depth, double branching,
+                         long probes, long hits, long nanos) {
+        _nodes.record(nodes);
+        _depth.record(depth);
+        _speed.record(nanos == 0 ? 0 : (long) (nodes * 1e9 / nanos));
+        if (branching > 0) {
+            _branchingMoves += 1;
+            _branching += branching;
+        }
+        _probes += probes;
+        _hits += hits;
+        _searchNanos += nanos;
+        _latency.record(nanos);
+    }
+
+    /** Add the statistics in OTHER to mine. */
+    void add(SearchStatistics other) {
+        _bookMoves += other._bookMoves;
+        _ponderedMoves += other._ponderedMoves;
+        _solvedMoves += other._solvedMoves;
+        _solverNodes += other._solverNodes;
+        _nodes.add(other._nodes);
+        _depth.add(other._depth);
+        _speed.add(other._speed);
+        _latency.add(other._latency);
+        _branchingMoves += other._branchingMoves;
+        _branching += other._branching;
+        _probes += other._probes;
+        _hits += other._hits;
+        _searchNanos += other._searchNanos;
+    }
+
+    /** Forget everything recorded. */
+    void reset() {
+        _bookMoves = _ponderedMoves = _solvedMoves = _solverNodes = 0;
+        _nodes.reset();
+        _depth.reset();
+        _speed.reset();
+        _latency.reset();
+        _branchingMoves = 0;
+        _branching = 0;
+        _probes = _hits = _searchNanos = 0;
+    }
+
+    /** Return the number of moves recorded. */
+    long moves() {
+        return _latency.count();
+    }
+
+    /** Return the number of searched moves recorded. */
+    long searchedMoves() {
+        return _nodes.count();
+    }
+
+    /** Return the number of moves recorded that were found by
+     *  pondering. */
+    long ponderedMoves() {
+        return _ponderedMoves;
+    }
+
+    /** Return the positions visited per second of search, or 0 if there
+     *  has been none. */
+    double nodesPerSecond() {
+        return _searchNanos == 0 ? 0 : _nodes.total() * 1e9 / _searchNanos;
+    }
+
+    /** Return the mean effective branching factor of the searches whose
+     *  branching factor is known, or 0 if there are none. */
+    double branchingFactor() {
+        return _branchingMoves == 0 ? 0 : _branching / _branchingMoves;
+    }
+
+    /** Return the fraction of probes of the transposition table that
+     *  found an entry, or 0 if there were none. */
+    double tableHitRate() {
+        return _probes == 0 ? 0 : (double) _hits / _probes;
+    }
+
+    /** Return the distribution of the positions visited per searched
+     *  move. */
+    Histogram nodes() {
+        return _nodes;
+    }
+
+    /** Return the distribution of the depths reached per searched move. */
+    Histogram depth() {
+        return _depth;
+    }
+
+    /** Return the distribution of the positions visited per second for
+     *  each searched move. */
+    Histogram speed() {
+        return _speed;
+    }
+
+    /** Return the distribution of the time in nanoseconds taken by each
+     *  move. */
+    Histogram latency() {
+        return _latency;
+    }
+
+    /** Print a summary on OUT, for people. */
+    void print(PrintStream out) {
+        out.printf("Moves: %d searched, %d from book, %d pondered, "
+                   + "%d solved (%d solver nodes)%n", searchedMoves(),
+                   _bookMoves, _ponderedMoves, _solvedMoves, _solverNodes);
+        out.printf("Depth: mean %.1f, median %d, max %d plies%n",
+                   _depth.mean(), _depth.percentile(0.5), _depth.max());
+        out.printf("Nodes: %d, median %d, 90%% %d, max %d per move%n",
+                   _nodes.total(), _nodes.percentile(0.5),
+                   _nodes.percentile(0.9), _nodes.max());
+        out.printf("Speed: %.0f nodes/s (median move %d nodes/s)%n",
+                   nodesPerSecond(), _speed.percentile(0.5));
+        out.printf("Branching factor: %.2f  Table hit rate: %.1f%%%n",
+                   branchingFactor(), 100 * tableHitRate());
+        out.printf("Move latency: median %.1f ms, 90%% %.1f ms, "
+                   + "99%% %.1f ms, max %.1f ms%n",
+                   _latency.percentile(0.5) / 1e6,
+                   _latency.percentile(0.9) / 1e6,
+                   _latency.percentile(0.99) / 1e6, _latency.max() / 1e6);
+    }
+
+    /** Print everything recorded on OUT as a single line holding a JSON
+     *  object, for programs.  Times are in nanoseconds. */
+    void printJson(PrintStream out) {
+        out.println(String.format(
+            Locale.ROOT,
+            "{\"moves\":%d,\"searched\":%d,\"book\":%d,\"pondered\":%d,"
+            + "\"solved\":%d,\"solver_nodes\":%d,\"nodes\":%s,\"depth\":%s,"
+            + "\"nodes_per_second\":%.0f,\"move_nodes_per_second\":%s,"
+            + "\"branching_factor\":%.3f,\"table_probes\":%d,"
+            + "\"table_hits\":%d,\"table_hit_rate\":%.4f,\"latency\":%s}",
+            moves(), searchedMoves(), _bookMoves, _ponderedMoves,
+            _solvedMoves,
+            _solverNodes, json(_nodes), json(_depth), nodesPerSecond(),
+            json(_speed), branchingFactor(), _probes, _hits,
+            tableHitRate(), json(_latency)));
+    }
+
+    /** Return a JSON object summarizing HISTOGRAM. */
+    private static String json(Histogram histogram) {
+        return String.format(Locale.ROOT,
+                             "{\"count\":%d,\"total\":%d,\"mean\":%.1f,"
+                             + "\"p50\":%d,\"p90\":%d,\"p99\":%d,"
+                             + "\"max\":%d}",
+                             histogram.count(), histogram.total(),
+                             histogram.mean(), histogram.percentile(0.5),
+                             histogram.percentile(0.9),
+                             histogram.percentile(0.99), histogram.max());
+    }
+
+    /** Numbers of moves from the book, from pondering and from the
+     *  solver. */
+    private long _bookMoves, _ponderedMoves, _solvedMoves;
+    /** Positions visited by the solver in finding moves. */
+    private long _solverNodes;
+    /** Positions visited per searched move. */
+    private final Histogram _nodes = new Histogram();
+    /** Depth of the last complete iteration per searched move. */
+    private final Histogram _depth = new Histogram();
+    /** Positions visited per second per searched move. */
+    private final Histogram _speed = new Histogram();
+    /** Nanoseconds taken per move. */
+    private final Histogram _latency = new Histogram();
+    /** Number of searched moves with known branching factors. */
+    private long _branchingMoves;
+    /** Sum of the known branching factors. */
+    private double _branching;
+    /** Probes of the transposition table, and those finding entries. */
+    private long _probes, _hits;
+    /** Nanoseconds spent on searched moves. */
+    private long _searchNanos;
+}
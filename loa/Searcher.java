@@ -0,0 +1,340 @@
+package loa;
+
+import static loa.Board.MAX_MOVES;
+
+/** A negamax alpha-beta search of the positions following a Board.  Each
+ *  Searcher searches its own copy of the position, and so may run in its
+ *  own thread; Searchers share results through a TranspositionTable.
+ *  @author Maaz Uddin
+ */
+class Searcher {
+
+    /** A value greater than the magnitude of any position value. */
+    static final int INFTY = Integer.MAX_VALUE;
+
+    /** A bound on the number of plies from the root of any search. */
+    static final int MAX_PLY = 1000;
+
+    /** The value of a position in which the side to move has won.  A win
+     *  found K plies from the root of a search is valued WINNING_VALUE - K,
+     *  so that quicker wins are preferred. */
+    static final int WINNING_VALUE = INFTY - MAX_PLY;
+
+    /** The value of a position that repeats an earlier one in the game or
+     *  the search: going round a cycle gains neither side anything. */
+    static final int REPEATED_VALUE = 0;
+
+    /** The greatest depth to which iterative deepening will search. */
+    static final int MAX_DEPTH = 64;
+
+    /** The clock is checked once every CHECK_INTERVAL + 1 nodes. */
+    private static final int CHECK_INTERVAL = 1023;
+
+    /** Prepare to search from the position on BOARD, which is copied
+     *  (without its moves, but with the positions that preceded it, so
+     *  that returns to them are seen as repetitions), storing results in
+     *  TABLE and keeping evaluations in CACHE (unless it is null). */
+    void setPosition(Board board, TranspositionTable table,
+                     EvalCache cache) {
+        _board.restore(board);
+        _table = table;
+        _evalCache = cache;
+        _nodes = 0;
+        _probes = _hits = 0;
+        _depth = 0;
+        _branching = 0;
+        _stopped = false;
+        _orderer.newSearch();
+        _orderer.resetStatistics();
+    }
+
+    /** Return the best move for the side to move, or null if there are no
+     *  legal moves.  Searches with iterative deepening: to depth
+     *  FIRSTDEPTH, FIRSTDEPTH + 1, ... up to MAXDEPTH, or, if BUDGET > 0,
+     *  until BUDGET nanoseconds have passed.
+     *  An iteration cut short by the time limit or by stop() is
+     *  discarded in favor of the last complete one.  The first iteration
+     *  is only cut short by stop(). */
+    Move iterate(int firstDepth, int maxDepth, long budget) {
+        long start = System.nanoTime();
+        _deadline = Long.MAX_VALUE;
+        _aborted = false;
+        Move best = null;
+        long nodes0 = _nodes;
+        _depth = 0;
+        _branching = 0;
+        for (int depth = firstDepth; depth <= maxDepth; depth += 1) {
+            Move move = minMax(depth);
+            if (_aborted) {
+                break;
+            }
+            best = move;
+            _depth = depth;
+            _branching = Math.pow(_nodes - nodes0, 1.0 / depth);
+            Reporter.debug(2, "depth %d: %s (%d)", depth, move, _bestValue);
+            if (move == null
+                || Math.abs(_bestValue) >= WINNING_VALUE - MAX_PLY) {
+                break;
+            }
+            if (budget > 0) {
+                if (2 * (System.nanoTime() - start) > budget) {
+                    break;
+                }
+                _deadline = start + budget;
+            }
+        }
+        return best;
+    }
+
+    /** Make any search in progress return as soon as possible.  May be
+     *  called from any thread. */
+    void stop() {
+        _stopped = true;
+    }
+
+    /** Return the number of positions visited since setPosition. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the depth of the last iteration completed by the last call
+     *  of iterate, or 0 if none was. */
+    int depth() {
+        return _depth;
+    }
+
+    /** Return the effective branching factor of the last call of
+     *  iterate: the number B such that B ** D is the number of positions
+     *  it visited, where D is depth(); or 0 if it completed no
+     *  iteration. */
+    double branchingFactor() {
+        return _branching;
+    }
+
+    /** Return the number of probes of the transposition table since
+     *  setPosition. */
+    long tableProbes() {
+        return _probes;
+    }
+
+    /** Return the number of those probes that found an entry. */
+    long tableHits() {
+        return _hits;
+    }
+
+    /** Return the move orderer of this Searcher, whose statistics cover
+     *  the searches since setPosition. */
+    MoveOrderer moveOrderer() {
+        return _orderer;
+    }
+
+    /** Return the best move for the side to move on _board found by a
+     *  search DEPTH > 0 plies deep, or null if there are no legal moves.
+     *  Its value is left in _bestValue.
+     *  The result is meaningless if the search is aborted. */
+    Move minMax(int depth) {
+        _bestMove = null;
+        _bestValue = negamax(depth, -INFTY, INFTY, 0);
+        return _bestMove;
+    }
+
+    /** Return the negamax value of _board for the side to move, searching
+     *  DEPTH more plies below a node PLY plies from the root.  The result
+     *  is exact if it lies strictly between ALPHA and BETA; otherwise it
+     *  is only a bound on the true value (an upper bound if <= ALPHA, a
+     *  lower bound if >= BETA).  Below the root, a position that occurred
+     *  earlier in the game or the search has REPEATED_VALUE.  At the root
+     *  (PLY == 0), the best move is left in _bestMove.  Once _aborted is
+     *  set (when the clock passes _deadline or stop() is called), returns
+     *  a meaningless value at once.  _board is unchanged on return. */
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        if ((++_nodes & CHECK_INTERVAL) == 0
+            && (_stopped || System.nanoTime() > _deadline)) {
+            _aborted = true;
+        }
+        if (_aborted) {
+            return 0;
+        }
+        if (_board.piecesContiguous(_board.turn().opposite())) {
+            return -WINNING_VALUE + ply;
+        }
+        if (_board.piecesContiguous(_board.turn())) {
+            return WINNING_VALUE - ply;
+        }
+        if (ply > 0 && _board.repeated()) {
+            return REPEATED_VALUE;
+        }
+        if (depth == 0) {
+            return evaluate();
+        }
+
+        long key = _board.zobristKey();
+        long entry = _table.probe(key);
+        Move tableMove = null;
+        _probes += 1;
+        if (entry != TranspositionTable.MISS) {
+            _hits += 1;
+            tableMove = Move.fromIndex(TranspositionTable.move(entry),
+                                       _board);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int val = fromTable(TranspositionTable.score(entry), ply);
+                switch (TranspositionTable.bound(entry)) {
+                case TranspositionTable.EXACT:
+                    return val;
+                case TranspositionTable.LOWER:
+                    if (val >= beta) {
+                        return val;
+                    }
+                    break;
+                default:
+                    if (val <= alpha) {
+                        return val;
+                    }
+                    break;
+                }
+            }
+        }
+        if (!_board.isLegal(tableMove)) {
+            tableMove = null;
+        }
+
+        int alpha0 = alpha;
+        int bestVal = -INFTY;
+        Move bestMove = null;
+        int searched = 0, bestSearched = 0;
+        if (tableMove != null) {
+            bestVal = searchMove(tableMove, depth, alpha, beta, ply);
+            bestMove = tableMove;
+            alpha = Math.max(alpha, bestVal);
+            searched = bestSearched = 1;
+        }
+        int[] moves = _moveBuffers[ply];
+        int count = alpha < beta ? _board.generateMoves(moves) : 0;
+        _orderer.score(moves, count, ply);
+        for (int i = 0; !_aborted && alpha < beta && i < count; i += 1) {
+            Move move = Move.fromPacked(_orderer.select(moves, i, count,
+                                                        ply));
+            if (move == tableMove) {
+                continue;
+            }
+            int currVal = searchMove(move, depth, alpha, beta, ply);
+            searched += 1;
+            if (currVal > bestVal) {
+                bestVal = currVal;
+                bestMove = move;
+                bestSearched = searched;
+                alpha = Math.max(alpha, currVal);
+            }
+        }
+        if (_aborted) {
+            return 0;
+        }
+        if (bestMove == null) {
+            return evaluate();
+        }
+
+        int bound;
+        if (bestVal <= alpha0) {
+            bound = TranspositionTable.UPPER;
+        } else if (bestVal >= beta) {
+            bound = TranspositionTable.LOWER;
+            _orderer.cutoff(bestMove.packed(), depth, ply, bestSearched);
+        } else {
+            bound = TranspositionTable.EXACT;
+        }
+        _table.store(key, depth, bound, toTable(bestVal, ply),
+                     bestMove.index());
+        if (ply == 0) {
+            _bestMove = bestMove;
+        }
+        return bestVal;
+    }
+
+    /** Return Evaluator.eval(_board), from _evalCache if possible. */
+    private int evaluate() {
+        if (_evalCache == null) {
+            return Evaluator.eval(_board);
+        }
+        long key = _board.zobristKey();
+        int val = _evalCache.get(key);
+        if (val == EvalCache.MISSING) {
+            val = Evaluator.eval(_board);
+            _evalCache.put(key, val);
+        }
+        return val;
+    }
+
+    /** Return the negamax value for the side to move of making MOVE on
+     *  _board and searching the result to DEPTH - 1 further plies, with
+     *  ALPHA, BETA and PLY as for negamax. */
+    private int searchMove(Move move, int depth, int alpha, int beta,
+                           int ply) {
+        _board.makeMove(move);
+        int val = -negamax(depth - 1, -beta, -alpha, ply + 1);
+        _board.retract();
+        return val;
+    }
+
+    /** Return VAL, a value found PLY plies from the root, converted to
+     *  a value relative to the position where it was found, so that it
+     *  may be stored in the transposition table. */
+    static int toTable(int val, int ply) {
+        if (val >= WINNING_VALUE - MAX_PLY) {
+            return val + ply;
+        } else if (val <= -WINNING_VALUE + MAX_PLY) {
+            return val - ply;
+        }
+        return val;
+    }
+
+    /** Return VAL, a value taken from the transposition table, converted
+     *  to a value found PLY plies from the root.  The inverse of
+     *  toTable. */
+    static int fromTable(int val, int ply) {
+        if (val >= WINNING_VALUE - MAX_PLY) {
+            return val - ply;
+        } else if (val <= -WINNING_VALUE + MAX_PLY) {
+            return val + ply;
+        }
+        return val;
+    }
+
+    /** The board on which searches are performed.  It is restored from a
+     *  snapshot of the game board once per move and then modified in
+     *  place. */
+    private final Board _board = new Board();
+
+    /** Buffers for the moves generated at each ply. */
+    private final int[][] _moveBuffers = new int[MAX_DEPTH + 1][MAX_MOVES];
+
+    /** The order in which moves are tried. */
+    private final MoveOrderer _orderer = new MoveOrderer();
+
+    /** The transposition table used by the current search. */
+    private TranspositionTable _table;
+
+    /** The cache of evaluations used by the current search, or null. */
+    private EvalCache _evalCache;
+
+    /** The best move found at the root of the last search. */
+    private Move _bestMove;
+    /** The value of _bestMove. */
+    private int _bestValue;
+
+    /** Number of nodes visited. */
+    private long _nodes;
+    /** Number of probes of the transposition table, and of those that
+     *  found an entry. */
+    private long _probes, _hits;
+    /** Depth of the last complete iteration. */
+    private int _depth;
+    /** Effective branching factor of the last search (see
+     *  branchingFactor). */
+    private double _branching;
+    /** Value of System.nanoTime() after which the search is aborted. */
+    private long _deadline;
+    /** True iff the current search has been aborted. */
+    private boolean _aborted;
+    /** Set by stop() to request that the search be aborted. */
+    private volatile boolean _stopped;
+}
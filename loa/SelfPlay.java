@@ -0,0 +1,452 @@
+package loa;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import ucb.util.CommandArgs;
+
+import static loa.Piece.*;
+
+/** A headless match runner: plays many games between automated players
+ *  at once on a pool of threads, and summarizes who won, how long the
+ *  games lasted and how long each move took.  Every game has its own
+ *  Game and Board, reads no input and prints nothing, so games are
+ *  independent of one another and of the process.  The first few plies
+ *  of each game are chosen at random (from a source seeded by the game's
+ *  number), so that games between deterministic players differ, and any
+ *  game can be repeated by itself.
+ *  @author Maaz Uddin
+ */
+class SelfPlay {
+
+    /** Play games between automated players and print a summary on the
+     *  standard output.  Possible ARGS are
+     *      --games=N      Play N games (default 100).
+     *      --parallel=N   Play N games at once (default: one per
+     *                     processor).
+     *      --depth=N      Search N plies ahead.
+     *      --time=S       Search for S seconds per move.
+     *      --hash=N       Give each game a transposition table of N
+     *                     megabytes.
+     *      --evalcache=N  Cache N evaluations, shared by all games.
+     *      --book=FILE    Play from the opening book in FILE.
+     *      --threads=N    Search each move with N threads.
+     *      --random=N     Play the first N plies of each game at random
+     *                     (default 4).
+     *      --max-plies=N  Call a game drawn after N plies (default 400).
+     *      --seed=N       Seed the random openings with N (default 0).
+     *      --record=FILE  Append the games played to the game records in
+     *                     FILE.
+     *      --debug=N      Print debugging messages up to level N.
+     */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--games=(\\d+){0,1} "
+                            + "--parallel=([1-9]\\d*){0,1} "
+                            + "--depth=([1-9]\\d*){0,1} "
+                            + "--time=(\\d+(\\.\\d*)?|\\.\\d+){0,1} "
+                            + "--hash=([1-9]\\d*){0,1} "
+                            + "--evalcache=(\\d+){0,1} "
+                            + "--book=(.+){0,1} "
+                            + "--threads=([1-9]\\d*){0,1} "
+                            + "--random=(\\d+){0,1} "
+                            + "--max-plies=([1-9]\\d*){0,1} "
+                            + "--seed=(-?\\d+){0,1} "
+                            + "--record=(.+){0,1} "
+                            + "--debug=(\\d+){0,1}", args);
+        if (!options.ok()) {
+            System.err.println("Usage: java loa.SelfPlay [--games=N] "
+                               + "[--parallel=N] [--depth=N] [--time=S] "
+                               + "[--hash=N] [--evalcache=N] [--book=FILE] "
+                               + "[--threads=N] "
+                               + "[--random=N] [--max-plies=N] [--seed=N] "
+                               + "[--record=FILE] [--debug=N]");
+            System.exit(1);
+        }
+
+        if (options.contains("--debug")) {
+            Reporter.setMessageLevel(options.getInt("--debug"));
+        }
+        SelfPlay runner = new SelfPlay();
+        if (options.contains("--depth")) {
+            runner._depth = options.getInt("--depth");
+            if (runner._depth > Searcher.MAX_DEPTH) {
+                Main.error(1, "--depth must be at most %d.%n",
+                           Searcher.MAX_DEPTH);
+            }
+        }
+        if (options.contains("--time")) {
+            runner._timeLimit = options.getDouble("--time");
+        }
+        if (options.contains("--hash")) {
+            runner._hashSize = options.getInt("--hash");
+        }
+        if (options.contains("--evalcache")
+            && options.getInt("--evalcache") > 0) {
+            runner._evalCache =
+                new EvalCache(options.getInt("--evalcache"));
+        }
+        if (options.contains("--book")) {
+            try {
+                runner._book =
+                    new OpeningBook(Paths.get(options.getLast("--book")));
+            } catch (IOException excp) {
+                Main.error(1, "cannot read book: %s%n", excp.getMessage());
+            }
+        }
+        if (options.contains("--threads")) {
+            runner._threads = options.getInt("--threads");
+        }
+        if (options.contains("--random")) {
+            runner._randomPlies = options.getInt("--random");
+        }
+        if (options.contains("--max-plies")) {
+            runner._maxPlies = options.getInt("--max-plies");
+        }
+        if (options.contains("--seed")) {
+            runner._seed = Long.parseLong(options.getLast("--seed"));
+        }
+        int games =
+            options.contains("--games") ? options.getInt("--games") : 100;
+        int parallel = options.contains("--parallel")
+            ? options.getInt("--parallel")
+            : Runtime.getRuntime().availableProcessors();
+        if (options.contains("--record")) {
+            Summary summary = new Summary();
+            try (GameRecordWriter records =
+                     new GameRecordWriter(
+                         Files.newOutputStream(
+                             Paths.get(options.getLast("--record")),
+                             StandardOpenOption.CREATE,
+                             StandardOpenOption.APPEND))) {
+                Board start = new Board();
+                runner.run(games, parallel, result -> {
+                    summary.add(result);
+                    record(records, start, result);
+                });
+            } catch (IOException excp) {
+                Main.error(1, "cannot write records: %s%n",
+                           excp.getMessage());
+            }
+            summary.print(System.out);
+        } else {
+            runner.run(games, parallel).print(System.out);
+        }
+        if (runner._evalCache != null) {
+            Reporter.debug(1, "eval cache: %d hits, %d misses",
+                           runner._evalCache.hits(),
+                           runner._evalCache.misses());
+        }
+    }
+
+    /** Append the game RESULT, played from the position on START, to
+     *  RECORDS. */
+    static void record(GameRecordWriter records, Board start,
+                       Result result) {
+        try {
+            records.writeGame(start, result.moves(), result.winner());
+        } catch (IOException excp) {
+            Main.error(1, "cannot write records: %s%n", excp.getMessage());
+        }
+    }
+
+    /** Make the players search DEPTH plies ahead. */
+    void setSearchDepth(int depth) {
+        _depth = depth;
+    }
+
+    /** Play the first PLIES plies of each game at random. */
+    void setRandomPlies(int plies) {
+        _randomPlies = plies;
+    }
+
+    /** Seed the random openings with SEED. */
+    void setSeed(long seed) {
+        _seed = seed;
+    }
+
+    /** Play games 0 .. GAMES-1, PARALLEL at a time, and return their
+     *  totals. */
+    Summary run(int games, int parallel) {
+        Summary summary = new Summary();
+        run(games, parallel, summary::add);
+        return summary;
+    }
+
+    /** Play games 0 .. GAMES-1, PARALLEL at a time, passing their results
+     *  to RESULTS, in order, in this thread. */
+    void run(int games, int parallel, Consumer<Result> results) {
+        ExecutorService pool = Executors.newFixedThreadPool(parallel);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (int i = 0; i < games; i += 1) {
+                int game = i;
+                futures.add(pool.submit(() -> play(game)));
+            }
+            for (Future<Result> result : futures) {
+                results.accept(result.get());
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("self-play interrupted");
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException("self-play game failed",
+                                            excp.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Play game number GAME to the end and return its result. */
+    Result play(int game) {
+        Game context =
+            new Game(new BufferedReader(new StringReader("")),
+                     new PrintStream(OutputStream.nullOutputStream()));
+        context.setSearchDepth(_depth);
+        context.setTimeLimit(_timeLimit);
+        context.setHashSize(_hashSize);
+        if (_evalCache != null) {
+            context.setEvalCache(_evalCache);
+        }
+        context.setOpeningBook(_book);
+        context.setThreads(_threads);
+        Board board = context.getBoard();
+        Player[] players = {
+            new MachinePlayer(BP, context), new MachinePlayer(WP, context)
+        };
+        Random random = new Random(_seed * 1_000_003L + game);
+        long[] latencies = new long[_maxPlies];
+        Move[] moves = new Move[_maxPlies];
+        int timed = 0;
+
+        while (!board.gameOver() && board.movesMade() < _maxPlies) {
+            Move move;
+            if (board.movesMade() < _randomPlies) {
+                move = randomMove(board, random);
+            } else {
+                long start = System.nanoTime();
+                move = players[board.turn().ordinal()].makeMove();
+                latencies[timed] = System.nanoTime() - start;
+                timed += 1;
+            }
+            if (move == null) {
+                break;
+            }
+            moves[board.movesMade()] = move;
+            board.makeMove(move);
+        }
+        return new Result(board.winner(),
+                          Arrays.copyOf(moves, board.movesMade()),
+                          Arrays.copyOf(latencies, timed),
+                          context.statistics());
+    }
+
+    /** Return a legal move on BOARD chosen using RANDOM, or null if there
+     *  is none. */
+    private static Move randomMove(Board board, Random random) {
+        ArrayList<Move> moves = new ArrayList<>();
+        for (Iterator<Move> iter = board.legalMoves(); iter.hasNext();) {
+            moves.add(iter.next());
+        }
+        if (moves.isEmpty()) {
+            return null;
+        }
+        return moves.get(random.nextInt(moves.size()));
+    }
+
+    /** The outcome of one game. */
+    static class Result {
+        /** A game won by WINNER (null if drawn) whose moves were MOVES,
+         *  and whose automated moves took LATENCIES nanoseconds and had
+         *  STATISTICS. */
+        Result(Piece winner, Move[] moves, long[] latencies,
+               SearchStatistics statistics) {
+            _winner = winner;
+            _moves = moves;
+            _latencies = latencies;
+            _statistics = statistics;
+        }
+
+        /** Return the winning side, or null if the game was drawn. */
+        Piece winner() {
+            return _winner;
+        }
+
+        /** Return the number of plies played. */
+        int plies() {
+            return _moves.length;
+        }
+
+        /** Return the moves played, in order. */
+        Move[] moves() {
+            return _moves;
+        }
+
+        /** Return the time in nanoseconds taken by each automated move,
+         *  in order. */
+        long[] latencies() {
+            return _latencies;
+        }
+
+        /** Return the statistics of the automated moves. */
+        SearchStatistics statistics() {
+            return _statistics;
+        }
+
+        /** The winner, or null. */
+        private final Piece _winner;
+        /** The moves of the game. */
+        private final Move[] _moves;
+        /** Nanoseconds taken by each automated move. */
+        private final long[] _latencies;
+        /** Statistics of the automated moves. */
+        private final SearchStatistics _statistics;
+    }
+
+    /** Totals over a series of games. */
+    static class Summary {
+
+        /** Include RESULT in the totals. */
+        void add(Result result) {
+            _games += 1;
+            if (result.winner() != null) {
+                _wins[result.winner().ordinal()] += 1;
+            }
+            _plies += result.plies();
+            _minPlies = Math.min(_minPlies, result.plies());
+            _maxPlies = Math.max(_maxPlies, result.plies());
+            long[] latencies = result.latencies();
+            if (_moves + latencies.length > _latencies.length) {
+                _latencies = Arrays.copyOf(_latencies,
+                    Math.max(2 * _latencies.length,
+                             _moves + latencies.length));
+            }
+            System.arraycopy(latencies, 0, _latencies, _moves,
+                             latencies.length);
+            _moves += latencies.length;
+            _sorted = false;
+            _statistics.add(result.statistics());
+        }
+
+        /** Return the number of games. */
+        int games() {
+            return _games;
+        }
+
+        /** Return the number of games won by SIDE. */
+        int wins(Piece side) {
+            return _wins[side.ordinal()];
+        }
+
+        /** Return the number of games won by neither side. */
+        int draws() {
+            return _games - _wins[0] - _wins[1];
+        }
+
+        /** Return the mean length of the games in plies. */
+        double meanPlies() {
+            return _games == 0 ? 0 : (double) _plies / _games;
+        }
+
+        /** Return the statistics of all the automated moves. */
+        SearchStatistics statistics() {
+            return _statistics;
+        }
+
+        /** Return the number of automated moves timed. */
+        int moves() {
+            return _moves;
+        }
+
+        /** Return the time in nanoseconds within which FRACTION of the
+         *  automated moves were made (0 if there were none). */
+        long latency(double fraction) {
+            if (_moves == 0) {
+                return 0;
+            }
+            if (!_sorted) {
+                Arrays.sort(_latencies, 0, _moves);
+                _sorted = true;
+            }
+            int k = (int) Math.ceil(fraction * _moves) - 1;
+            return _latencies[Math.max(0, Math.min(k, _moves - 1))];
+        }
+
+        /** Print these totals on OUT. */
+        void print(PrintStream out) {
+            out.printf("Games: %d%n", _games);
+            out.printf("Black wins: %d (%.1f%%)  White wins: %d (%.1f%%)  "
+                       + "Draws: %d (%.1f%%)%n",
+                       wins(BP), percent(wins(BP)), wins(WP),
+                       percent(wins(WP)), draws(), percent(draws()));
+            out.printf("Game length: mean %.1f, min %d, max %d plies%n",
+                       meanPlies(), _games == 0 ? 0 : _minPlies, _maxPlies);
+            out.printf("Move latency: median %.1f ms, 90%% %.1f ms, "
+                       + "99%% %.1f ms, max %.1f ms (%d moves)%n",
+                       latency(0.5) / 1e6, latency(0.9) / 1e6,
+                       latency(0.99) / 1e6, latency(1.0) / 1e6, _moves);
+            out.printf("Search: mean depth %.1f, %.0f nodes/s, branching "
+                       + "factor %.2f, table hit rate %.1f%%%n",
+                       _statistics.depth().mean(),
+                       _statistics.nodesPerSecond(),
+                       _statistics.branchingFactor(),
+                       100 * _statistics.tableHitRate());
+        }
+
+        /** Return N as a percentage of the number of games. */
+        private double percent(int n) {
+            return _games == 0 ? 0 : 100.0 * n / _games;
+        }
+
+        /** Number of games. */
+        private int _games;
+        /** Games won, indexed by the ordinal of the winner. */
+        private final int[] _wins = new int[2];
+        /** Total, least and greatest length of the games. */
+        private int _plies, _minPlies = Integer.MAX_VALUE, _maxPlies;
+        /** Nanoseconds taken by each automated move, in _latencies[0 ..
+         *  _moves-1]. */
+        private long[] _latencies = new long[1024];
+        /** Number of automated moves. */
+        private int _moves;
+        /** Statistics of all the automated moves. */
+        private final SearchStatistics _statistics = new SearchStatistics();
+        /** True iff _latencies[0 .. _moves-1] is sorted. */
+        private boolean _sorted;
+    }
+
+    /** Plies searched per move. */
+    private int _depth = Game.DEFAULT_SEARCH_DEPTH;
+    /** Seconds of search per move, or 0. */
+    private double _timeLimit;
+    /** Megabytes of transposition table per game. */
+    private int _hashSize = Game.DEFAULT_HASH_SIZE;
+    /** Evaluations shared by all games, or null. */
+    private EvalCache _evalCache;
+    /** Opening book shared by all games, or null. */
+    private OpeningBook _book;
+    /** Search threads per move. */
+    private int _threads = 1;
+    /** Number of random plies opening each game. */
+    private int _randomPlies = 4;
+    /** Length in plies after which a game is drawn. */
+    private int _maxPlies = 400;
+    /** Seed of the random openings. */
+    private long _seed;
+}
@@ -0,0 +1,83 @@
+package loa;
+
+/** Splits lines of input into their first few words, as the positions of
+ *  those words in the line rather than as copies of them, so that
+ *  recognizing a command (or deciding that a line is not one) allocates
+ *  nothing.  Words are separated by whitespace (as for the regular
+ *  expression \s).  A line starting with # is a comment: its first word
+ *  is "#", and the rest of it follows as further words.
+ *  @author Maaz Uddin
+ */
+class Tokenizer {
+
+    /** Most words of a line looked at. */
+    static final int MAX_WORDS = 3;
+
+    /** Split LINE into words, discarding those of any previous line. */
+    void reset(String line) {
+        _line = line;
+        _count = 0;
+        int n = line.length();
+        int i = 0;
+        while (_count < MAX_WORDS) {
+            while (i < n && isSpace(line.charAt(i))) {
+                i += 1;
+            }
+            if (i == n) {
+                break;
+            }
+            _starts[_count] = i;
+            if (_count == 0 && line.charAt(i) == '#') {
+                i += 1;
+            } else {
+                while (i < n && !isSpace(line.charAt(i))) {
+                    i += 1;
+                }
+            }
+            _ends[_count] = i;
+            _count += 1;
+        }
+    }
+
+    /** Return the number of words found, at most MAX_WORDS. */
+    int count() {
+        return _count;
+    }
+
+    /** Return word K (numbering from 0), or "" if there are not K + 1
+     *  words. */
+    String word(int k) {
+        return k < _count ? _line.substring(_starts[k], _ends[k]) : "";
+    }
+
+    /** Return the member of NAMES equal to word K, ignoring case, or
+     *  null if none is (or there is no word K). */
+    String find(int k, String[] names) {
+        if (k >= _count) {
+            return null;
+        }
+        int length = _ends[k] - _starts[k];
+        for (String name : names) {
+            if (name.length() == length
+                && _line.regionMatches(true, _starts[k], name, 0, length)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    /** Return true iff C is whitespace, as for the regular expression
+     *  \s. */
+    static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000b'
+            || c == '\f' || c == '\r';
+    }
+
+    /** The line split. */
+    private String _line = "";
+    /** Number of words found. */
+    private int _count;
+    /** Start and end positions in _line of each word found. */
+    private final int[] _starts = new int[MAX_WORDS],
+        _ends = new int[MAX_WORDS];
+}
@@ -0,0 +1,164 @@
+package loa;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/** A fixed-size table of search results indexed by Board.zobristKey().
+ *  The table is a single preallocated array of longs.  Each entry is two
+ *  longs: a packed data word (see probe) and the position key exclusive-
+ *  or'ed with that word.  A reader that sees a data word and a key word
+ *  from two different stores finds that they do not match its key, and
+ *  simply misses, so any number of threads may probe and store at once
+ *  without locking.  Entries are grouped into buckets of BUCKET_SIZE;
+ *  a store replaces an entry for the same position, or else the entry in
+ *  its bucket from the oldest search with the least depth.
+ *  @author Maaz Uddin
+ */
+class TranspositionTable {
+
+    /** Bound types.  The stored score is exactly the value of the
+     *  position (EXACT), or no greater (UPPER) or no less (LOWER). */
+    static final int UPPER = 1, LOWER = 2, EXACT = 3;
+
+    /** The value returned by probe for a position not in the table. */
+    static final long MISS = 0L;
+
+    /** Number of entries in a bucket. */
+    static final int BUCKET_SIZE = 4;
+
+    /** A table using about MEGABYTES megabytes (at least one bucket). */
+    TranspositionTable(int megabytes) {
+        long bytes = (long) megabytes << 20;
+        long buckets = Long.highestOneBit(Math.max(1, bytes / BUCKET_BYTES));
+        buckets = Math.min(buckets, MAX_LONGS / LONGS_PER_BUCKET);
+        _table = new long[(int) (buckets * LONGS_PER_BUCKET)];
+        _mask = buckets - 1;
+    }
+
+    /** Return the number of entries in this table. */
+    int capacity() {
+        return _table.length / 2;
+    }
+
+    /** Remove all entries. Not safe to call during a search. */
+    void clear() {
+        Arrays.fill(_table, 0L);
+        _generation = 0;
+    }
+
+    /** Mark the start of a new search, making entries stored by earlier
+     *  searches the first to be replaced. */
+    void newSearch() {
+        _generation = (_generation + 1) & GENERATION_MASK;
+    }
+
+    /** Return the data stored for the position with Zobrist key KEY, or
+     *  MISS if there is none.  The parts of the result are extracted by
+     *  score, depth, bound and move. */
+    long probe(long key) {
+        int base = bucket(key);
+        for (int i = base; i < base + LONGS_PER_BUCKET; i += 2) {
+            long data = (long) ENTRY.getOpaque(_table, i + 1);
+            if (data != MISS
+                && ((long) ENTRY.getOpaque(_table, i) ^ data) == key) {
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+    /** Record that the position with Zobrist key KEY, searched DEPTH
+     *  plies, has a value bounded by SCORE as indicated by BOUND, and that
+     *  MOVE (a Move.index(), or NO_MOVE) was its best move. */
+    void store(long key, int depth, int bound, int score, int move) {
+        int base = bucket(key);
+        int victim = base, victimRank = Integer.MAX_VALUE;
+        for (int i = base; i < base + LONGS_PER_BUCKET; i += 2) {
+            long data = (long) ENTRY.getOpaque(_table, i + 1);
+            if (data == MISS
+                || ((long) ENTRY.getOpaque(_table, i) ^ data) == key) {
+                if (data != MISS && move == NO_MOVE) {
+                    move = move(data);
+                }
+                victim = i;
+                break;
+            }
+            int rank = depth(data);
+            if (generation(data) == _generation) {
+                rank += MAX_DEPTH + 1;
+            }
+            if (rank < victimRank) {
+                victim = i;
+                victimRank = rank;
+            }
+        }
+        long data = (score & SCORE_MASK)
+            | ((long) (move & MOVE_MASK) << MOVE_SHIFT)
+            | ((long) Math.min(depth, MAX_DEPTH) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) _generation << GENERATION_SHIFT);
+        ENTRY.setOpaque(_table, victim, key ^ data);
+        ENTRY.setOpaque(_table, victim + 1, data);
+    }
+
+    /** Return the score stored in table data DATA. */
+    static int score(long data) {
+        return (int) data;
+    }
+
+    /** Return the best move stored in DATA, or NO_MOVE. */
+    static int move(long data) {
+        return (int) (data >>> MOVE_SHIFT) & MOVE_MASK;
+    }
+
+    /** Return the search depth stored in DATA. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    /** Return the bound type (UPPER, LOWER or EXACT) stored in DATA. */
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /** Return the search generation that stored DATA. */
+    private static int generation(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & GENERATION_MASK;
+    }
+
+    /** Return the index in _table of the first long of KEY's bucket. */
+    private int bucket(long key) {
+        return (int) ((key ^ (key >>> 32)) & _mask) * LONGS_PER_BUCKET;
+    }
+
+    /** The value stored as the move of an entry with no best move. */
+    static final int NO_MOVE = 0;
+
+    /** Layout of a data word: score in bits 0-31, move in bits 32-47,
+     *  depth in bits 48-55, bound in bits 56-57, generation in bits
+     *  58-63. */
+    private static final long SCORE_MASK = 0xffffffffL;
+    /** Shifts and masks of the other fields of a data word. */
+    private static final int MOVE_SHIFT = 32, MOVE_MASK = 0xffff,
+        DEPTH_SHIFT = 48, MAX_DEPTH = 0xff,
+        BOUND_SHIFT = 56, BOUND_MASK = 0x3,
+        GENERATION_SHIFT = 58, GENERATION_MASK = 0x3f;
+
+    /** Size of a bucket in longs and in bytes. */
+    private static final int LONGS_PER_BUCKET = 2 * BUCKET_SIZE,
+        BUCKET_BYTES = LONGS_PER_BUCKET * Long.BYTES;
+    /** Largest usable array length that is a power of two. */
+    private static final long MAX_LONGS = 1L << 30;
+
+    /** Atomic (untorn) access to the elements of _table. */
+    private static final VarHandle ENTRY =
+        MethodHandles.arrayElementVarHandle(long[].class);
+
+    /** Entries, as pairs (key ^ data, data), in buckets. */
+    private final long[] _table;
+    /** Mask selecting a bucket number from a hashed key. */
+    private final long _mask;
+    /** Generation number of the current search. */
+    private volatile int _generation;
+}
@@ -1,5 +1,18 @@
 package loa;
 
+import java.io.ByteArrayInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+
 import ucb.junit.textui;
 import org.junit.Test;
 
@@ -19,6 +32,18 @@ public class UnitTest {
         textui.runClasses(UnitTest.class);
     }
 
+    /** A position in which black connects by f5-c5. */
+    private static final Piece[][] NEAR_CONNECTED = {
+        { EMP, EMP, EMP, EMP, EMP, EMP, EMP, EMP },
+        { WP,  EMP, BP,  EMP, EMP, EMP, EMP, WP  },
+        { WP,  EMP, BP,  EMP, EMP, EMP, EMP, WP  },
+        { WP,  EMP, EMP, BP,  EMP, EMP, EMP, WP  },
+        { WP,  EMP, EMP, EMP, EMP, BP,  EMP, WP  },
+        { WP,  EMP, BP,  EMP, EMP, EMP, EMP, WP  },
+        { WP,  EMP, BP,  EMP, EMP, EMP, EMP, WP  },
+        { EMP, EMP, EMP, EMP, EMP, EMP, EMP, EMP }
+    };
+
     /** Test for initialize(). */
     @Test
     public void initializeTest() {
@@ -292,4 +317,899 @@ public class UnitTest {
         }
         assertEquals(36, count);
     }
+
+    /** Test for makeMove() and retract() on the piece masks. */
+    @Test
+    public void makeMoveRetractTest() {
+        Board board = new Board();
+        long black = board.pieces(BP), white = board.pieces(WP);
+        assertEquals(12, Long.bitCount(black));
+        assertEquals(12, Long.bitCount(white));
+        Move m1 = Move.create("b1-d3", board);
+        board.makeMove(m1);
+        assertEquals(EMP, board.get(2, 1));
+        assertEquals(BP, board.get(4, 3));
+        assertEquals(WP, board.turn());
+        Move m2 = Move.create("a3-d3", board);
+        assertEquals(true, board.isLegal(m2));
+        board.makeMove(m2);
+        assertEquals(11, Long.bitCount(board.pieces(BP)));
+        assertEquals(WP, board.get(4, 3));
+        board.retract();
+        board.retract();
+        assertEquals(black, board.pieces(BP));
+        assertEquals(white, board.pieces(WP));
+        assertEquals(new Board(), board);
+    }
+
+    /** Test for pieceCountAlong(). */
+    @Test
+    public void pieceCountAlongTest() {
+        Board board = new Board();
+        assertEquals(6, board.pieceCountAlong(2, 1, Direction.E));
+        assertEquals(2, board.pieceCountAlong(2, 1, Direction.N));
+        assertEquals(2, board.pieceCountAlong(2, 1, Direction.NE));
+        assertEquals(2, board.pieceCountAlong(2, 1, Direction.NW));
+        board.set(4, 4, BP);
+        assertEquals(3, board.pieceCountAlong(4, 4, Direction.S));
+        assertEquals(3, board.pieceCountAlong(4, 4, Direction.W));
+        assertEquals(1, board.pieceCountAlong(4, 4, Direction.SW));
+        board.makeMove(Move.create("b1-b3", board));
+        assertEquals(3, board.pieceCountAlong(1, 3, Direction.E));
+        assertEquals(5, board.pieceCountAlong(3, 1, Direction.W));
+        board.retract();
+        assertEquals(2, board.pieceCountAlong(1, 3, Direction.E));
+    }
+
+    /** Test for zobristKey() and equals(). */
+    @Test
+    public void zobristKeyTest() {
+        Board board = new Board();
+        long initial = board.zobristKey();
+        board.makeMove(Move.create("b1-d3", board));
+        assertNotEquals(initial, board.zobristKey());
+        Board copy = new Board(board);
+        assertEquals(board.zobristKey(), copy.zobristKey());
+        assertEquals(board, copy);
+        board.retract();
+        assertEquals(initial, board.zobristKey());
+        assertNotEquals(board, copy);
+
+        Board other = new Board();
+        other.set(2, 1, EMP);
+        other.set(4, 3, BP, WP);
+        assertEquals(copy.zobristKey(), other.zobristKey());
+        assertEquals(copy.hashCode(), other.hashCode());
+        assertEquals(copy, other);
+        other.set(1, 1, EMP, BP);
+        assertNotEquals(copy, other);
+    }
+
+    /** Test that MachinePlayer finds a connecting move. */
+    @Test
+    public void machinePlayerTest() {
+        Game game = new Game();
+        game.getBoard().initialize(NEAR_CONNECTED, BP);
+        for (int depth = 1; depth <= 3; depth += 1) {
+            game.setSearchDepth(depth);
+            Move move = new MachinePlayer(BP, game).makeMove();
+            assertEquals("f5-c5", move.toString());
+        }
+    }
+
+    /** Test for TranspositionTable. */
+    @Test
+    public void transpositionTableTest() {
+        TranspositionTable table = new TranspositionTable(1);
+        assertEquals(1 << 16, table.capacity());
+        Board board = new Board();
+        long key = board.zobristKey();
+        Move move = Move.create("b1-d3", board);
+        assertEquals(TranspositionTable.MISS, table.probe(key));
+        table.store(key, 5, TranspositionTable.LOWER, -1234, move.index());
+        long entry = table.probe(key);
+        assertEquals(-1234, TranspositionTable.score(entry));
+        assertEquals(5, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(move, Move.fromIndex(TranspositionTable.move(entry),
+                                          board));
+        assertEquals(TranspositionTable.MISS, table.probe(key ^ 1));
+
+        long[] keys = new long[TranspositionTable.BUCKET_SIZE + 1];
+        for (int i = 0; i < keys.length; i += 1) {
+            keys[i] = key + ((long) i << 50);
+            table.store(keys[i], i == 0 ? 0 : 10 + i,
+                        TranspositionTable.EXACT, i, 0);
+        }
+        assertEquals(TranspositionTable.MISS, table.probe(key));
+        for (int i = 1; i < keys.length; i += 1) {
+            assertEquals(i, TranspositionTable.score(table.probe(keys[i])));
+        }
+    }
+
+    /** Test that MachinePlayer respects a time limit. */
+    @Test
+    public void timeLimitTest() {
+        Game game = new Game();
+        game.setTimeLimit(0.1);
+        long start = System.nanoTime();
+        Move move = new MachinePlayer(BP, game).makeMove();
+        long elapsed = System.nanoTime() - start;
+        assertEquals(true, game.getBoard().isLegal(move));
+        assertEquals(true, elapsed < 1000000000L);
+    }
+
+    /** Test that a MachinePlayer searching with several threads finds
+     *  the same connecting move. */
+    @Test
+    public void parallelSearchTest() {
+        Game game = new Game();
+        game.getBoard().initialize(NEAR_CONNECTED, BP);
+        game.setThreads(3);
+        game.setSearchDepth(3);
+        Move move = new MachinePlayer(BP, game).makeMove();
+        assertEquals("f5-c5", move.toString());
+        game.getBoard().clear();
+        move = new MachinePlayer(BP, game).makeMove();
+        assertEquals(true, game.getBoard().isLegal(move));
+    }
+
+    /** Test for generateMoves() and Move.fromPacked(). */
+    @Test
+    public void generateMovesTest() {
+        Board board = new Board();
+        int[] buf = new int[Board.MAX_MOVES];
+        assertEquals(36, board.generateMoves(buf));
+        board.makeMove(Move.create("b1-d3", board));
+        int count = board.generateMoves(buf);
+        int i = 0;
+        for (Move move : board) {
+            assertEquals(move, Move.fromPacked(buf[i]));
+            assertEquals(buf[i], move.packed());
+            assertEquals(true, board.isLegal(move));
+            i += 1;
+        }
+        assertEquals(count, i);
+        Move capture = Move.create("a3-d3", board);
+        assertEquals(true, (capture.packed() & Move.CAPTURE) != 0);
+        assertEquals(EMP, Move.fromPacked(buf[0]).replacedPiece());
+        assertEquals(null, Move.fromPacked(0));
+    }
+
+    /** Test that piecesContiguous() does not join pieces across the
+     *  board's edges. */
+    @Test
+    public void piecesContiguousEdgeTest() {
+        Board board = new Board();
+        for (int c = 1; c <= Board.M; c += 1) {
+            for (int r = 1; r <= Board.M; r += 1) {
+                board.set(c, r, EMP);
+            }
+        }
+        board.set(8, 1, WP);
+        assertEquals(true, board.piecesContiguous(WP));
+        board.set(1, 2, WP);
+        assertEquals(false, board.piecesContiguous(WP));
+        board.set(1, 2, EMP);
+        board.set(1, 1, WP);
+        board.set(1, 8, WP);
+        assertEquals(false, board.piecesContiguous(WP));
+        for (int c = 2; c <= 7; c += 1) {
+            board.set(c, 1, WP);
+        }
+        assertEquals(false, board.piecesContiguous(WP));
+        for (int r = 2; r <= 7; r += 1) {
+            board.set(1, r, WP);
+        }
+        assertEquals(true, board.piecesContiguous(WP));
+    }
+
+    /** Test for the incrementally kept sums used by Evaluator. */
+    @Test
+    public void evaluatorTest() {
+        Board board = new Board();
+        assertEquals(0, Evaluator.eval(board));
+        assertEquals(54, board.columnSum(BP));
+        assertEquals(54, board.rowSum(WP));
+        board.makeMove(Move.create("b1-d3", board));
+        board.makeMove(Move.create("a3-d3", board));
+        board.makeMove(Move.create("c1-c3", board));
+        int[] columns = new int[2], rows = new int[2], values = new int[2];
+        for (int c = 1; c <= Board.M; c += 1) {
+            for (int r = 1; r <= Board.M; r += 1) {
+                Piece p = board.get(c, r);
+                if (p != EMP) {
+                    columns[p.ordinal()] += c;
+                    rows[p.ordinal()] += r;
+                    values[p.ordinal()] +=
+                        Evaluator.SQUARE_VALUES[Board.sq(c, r)];
+                }
+            }
+        }
+        for (Piece p : new Piece[] { BP, WP }) {
+            assertEquals(columns[p.ordinal()], board.columnSum(p));
+            assertEquals(rows[p.ordinal()], board.rowSum(p));
+            assertEquals(values[p.ordinal()], board.squareValueSum(p));
+        }
+
+        Piece[][] packed = {
+            { EMP, EMP, EMP, EMP, EMP, EMP, EMP, EMP },
+            { EMP, EMP, EMP, EMP, EMP, EMP, EMP, EMP },
+            { EMP, EMP, BP,  BP,  BP,  EMP, EMP, EMP },
+            { EMP, EMP, BP,  BP,  BP,  EMP, EMP, EMP },
+            { EMP, EMP, BP,  BP,  BP,  EMP, EMP, EMP },
+            { EMP, EMP, EMP, EMP, EMP, EMP, EMP, EMP },
+            { EMP, EMP, EMP, EMP, EMP, EMP, EMP, EMP },
+            { WP,  EMP, EMP, EMP, EMP, EMP, EMP, WP  }
+        };
+        board = new Board(packed, BP);
+        assertEquals(0, Evaluator.concentration(board, BP));
+        assertEquals(true, Evaluator.concentration(board, WP) > 0);
+        assertEquals(true, Evaluator.eval(board) > 0);
+    }
+
+    /** Test for Perft.count(). */
+    @Test
+    public void perftTest() {
+        Board board = new Board();
+        assertEquals(1, Perft.count(board, 0));
+        assertEquals(36, Perft.count(board, 1));
+        assertEquals(1244, Perft.count(board, 2));
+        assertEquals(44952, Perft.count(board, 3));
+        assertEquals(new Board(), board);
+    }
+
+    /** Test that SelfPlay games are independent and repeatable, and
+     *  that Board.winner() names the winner. */
+    @Test
+    public void selfPlayTest() {
+        SelfPlay runner = new SelfPlay();
+        SelfPlay.Summary summary = runner.run(4, 2);
+        assertEquals(4, summary.games());
+        assertEquals(4, summary.wins(BP) + summary.wins(WP)
+                     + summary.draws());
+        assertTrue(summary.moves() > 0);
+        assertTrue(summary.latency(0.5) <= summary.latency(1.0));
+
+        SelfPlay.Result first = runner.play(3), second = runner.play(3);
+        assertEquals(first.winner(), second.winner());
+        assertEquals(first.plies(), second.plies());
+        assertTrue(first.plies() > 4);
+        assertEquals(4 + first.latencies().length, first.plies());
+    }
+
+    /** Test for Board.winner(). */
+    @Test
+    public void winnerTest() {
+        Board board = new Board();
+        assertEquals(null, board.winner());
+        for (int c = 1; c <= 8; c += 1) {
+            for (int r = 1; r <= 8; r += 1) {
+                board.set(c, r, EMP);
+            }
+        }
+        board.set(1, 1, BP);
+        board.set(4, 4, WP);
+        board.set(6, 6, WP);
+        assertEquals(BP, board.winner());
+        board.set(5, 5, WP);
+        assertEquals(board.turn().opposite(), board.winner());
+    }
+
+    /** Test that MoveOrderer puts captures first, then killers, then
+     *  moves by history. */
+    @Test
+    public void moveOrdererTest() {
+        MoveOrderer orderer = new MoveOrderer();
+        int quiet1 = Move.pack(1, 17, BP, false),
+            quiet2 = Move.pack(2, 18, BP, false),
+            quiet3 = Move.pack(3, 19, BP, false),
+            capture = Move.pack(4, 20, BP, true);
+        orderer.cutoff(quiet3, 2, 0, 1);
+        orderer.cutoff(quiet2, 4, 1, 2);
+        assertEquals(2, orderer.cutoffs());
+        assertEquals(1, orderer.firstMoveCutoffs());
+        assertEquals(0.5, orderer.firstMoveCutoffRate(), 1e-9);
+
+        int[] moves = { quiet1, quiet2, quiet3, capture };
+        orderer.score(moves, moves.length, 0);
+        int[] expected = { capture, quiet3, quiet2, quiet1 };
+        for (int i = 0; i < moves.length; i += 1) {
+            assertEquals(expected[i],
+                         orderer.select(moves, i, moves.length, 0));
+        }
+
+        orderer.newSearch();
+        orderer.score(moves, moves.length, 0);
+        assertEquals(capture, orderer.select(moves, 0, moves.length, 0));
+        assertEquals(quiet2, orderer.select(moves, 1, moves.length, 0));
+        orderer.resetStatistics();
+        assertEquals(0, orderer.cutoffs());
+    }
+
+    /** Test for EvalCache, including clock replacement. */
+    @Test
+    public void evalCacheTest() {
+        EvalCache cache = new EvalCache(3);
+        assertEquals(EvalCache.PROBE_LIMIT, cache.capacity());
+        assertEquals(EvalCache.MISSING, cache.get(1L));
+        for (long key = 1; key <= 4; key += 1) {
+            cache.put(key, (int) -key);
+        }
+        assertEquals(-1, cache.get(1L));
+        assertEquals(-3, cache.get(3L));
+        cache.put(5L, 5);
+        assertEquals(-1, cache.get(1L));
+        assertEquals(EvalCache.MISSING, cache.get(2L));
+        assertEquals(5, cache.get(5L));
+        cache.put(5L, 6);
+        assertEquals(6, cache.get(5L));
+        assertEquals(5, cache.hits());
+        assertEquals(2, cache.misses());
+
+        Game game = new Game();
+        game.setEvalCacheSize(1000);
+        Board board = game.getBoard();
+        board.makeMove(Move.create("f1-f3", board));
+        MachinePlayer player = new MachinePlayer(WP, game);
+        assertTrue(board.isLegal(player.makeMove()));
+        assertTrue(game.evalCache().hits() + game.evalCache().misses() > 0);
+    }
+
+    /** Test that BookBuilder learns from a self-play game only the
+     *  winner's moves after the random ones. */
+    @Test
+    public void bookBuilderGameTest() {
+        Board board = new Board();
+        String[] played = { "b1-b3", "h3-e3", "c1-c3", "a2-c2", "d1-d3" };
+        Move[] moves = new Move[played.length];
+        for (int i = 0; i < played.length; i += 1) {
+            moves[i] = Move.create(played[i], board);
+            board.makeMove(moves[i]);
+        }
+        BookBuilder builder = new BookBuilder();
+        builder.addGame(new SelfPlay.Result(BP, moves, new long[0],
+                                            new SearchStatistics()),
+                        1, 3);
+        assertEquals(1, builder.positions());
+        builder.addGame(new SelfPlay.Result(null, moves, new long[0],
+                                            new SearchStatistics()),
+                        0, 5);
+        assertEquals(1, builder.entries());
+    }
+
+    /** Test that a book written by BookBuilder is read back by
+     *  OpeningBook and used by MachinePlayer. */
+    @Test
+    public void openingBookTest() throws IOException {
+        Board board = new Board();
+        Move first = Move.create("c1-c3", board);
+        Move other = Move.create("d1-d3", board);
+        BookBuilder builder = new BookBuilder();
+        builder.add(board, other);
+        builder.add(board, first);
+        builder.add(board, first);
+        board.makeMove(first);
+        Move reply = Move.create("a2-c4", board);
+        builder.add(board, reply);
+        board.retract();
+        assertEquals(2, builder.positions());
+        assertEquals(3, builder.entries());
+
+        Path file = Files.createTempFile("loa", ".book");
+        try {
+            builder.write(file);
+            OpeningBook book = new OpeningBook(file);
+            assertEquals(3, book.size());
+            assertEquals(first, book.lookup(board));
+            board.makeMove(first);
+            assertEquals(reply, book.lookup(board));
+            board.makeMove(reply);
+            assertEquals(null, book.lookup(board));
+
+            Game game = new Game();
+            game.setOpeningBook(book);
+            MachinePlayer player = new MachinePlayer(BP, game);
+            assertEquals(first, player.makeMove());
+        } finally {
+            Files.delete(file);
+        }
+        try {
+            new OpeningBook(Paths.get("loa", "help.txt"));
+            fail("OpeningBook accepted a file that is not a book");
+        } catch (IOException excp) {
+            /* Expected. */
+        }
+    }
+
+    /** Test for Board.groupCount and Board.stragglers. */
+    @Test
+    public void groupCountTest() {
+        Board board = new Board();
+        assertEquals(2, board.groupCount(BP));
+        assertEquals(2, board.groupCount(WP));
+        assertEquals(6, board.stragglers(BP));
+        assertFalse(EndgameSolver.nearConnected(board));
+        board.initialize(NEAR_CONNECTED, BP);
+        assertEquals(3, board.groupCount(BP));
+        assertEquals(3, board.stragglers(BP));
+        assertEquals(6, board.stragglers(WP));
+        assertTrue(EndgameSolver.nearConnected(board));
+    }
+
+    /** Test that EndgameSolver proves a win in one and proves nothing
+     *  for the side that cannot win. */
+    @Test
+    public void endgameSolverTest() {
+        Board board = new Board();
+        board.initialize(NEAR_CONNECTED, BP);
+        EndgameSolver solver = new EndgameSolver();
+        Move move = solver.solve(board);
+        assertEquals("f5-c5", move.toString());
+        assertEquals(Searcher.WINNING_VALUE - 1, solver.value());
+        board.makeMove(move);
+        assertEquals(BP, board.winner());
+
+        board.initialize(NEAR_CONNECTED, WP);
+        move = solver.solve(board);
+        assertTrue(solver.value() <= 0);
+        assertTrue(move == null || board.isLegal(move));
+    }
+
+    /** Test for Board.snapshot and Board.restore, and BoardPool. */
+    @Test
+    public void snapshotTest() {
+        Board board = new Board();
+        board.makeMove(Move.create("b1-b3", board));
+        board.makeMove(Move.create("h3-e3", board));
+        Board.Snapshot snapshot = board.snapshot();
+        Board copy = new Board();
+        copy.restore(snapshot);
+        assertEquals(board, copy);
+        assertEquals(board.toString(), copy.toString());
+        assertEquals(0, copy.movesMade());
+        assertEquals(board.turn(), copy.turn());
+        assertEquals(Evaluator.eval(board), Evaluator.eval(copy));
+        assertEquals(snapshot, copy.snapshot());
+        assertEquals(snapshot.hashCode(), copy.snapshot().hashCode());
+
+        copy.makeMove(Move.create("b3-b5", copy));
+        assertFalse(snapshot.equals(copy.snapshot()));
+        copy.retract();
+        assertEquals(snapshot, copy.snapshot());
+
+        Board pooled = BoardPool.acquire(snapshot);
+        assertEquals(board, pooled);
+        pooled.makeMove(Move.create("b3-b5", pooled));
+        BoardPool.release(pooled);
+        Board reused = BoardPool.acquire(BoardPool.INITIAL);
+        assertTrue(reused == pooled);
+        assertEquals(new Board(), reused);
+        assertEquals(0, reused.movesMade());
+        BoardPool.release(reused);
+    }
+
+    /** Test that games written by GameRecordWriter are replayed by
+     *  GameRecordReader, at one byte a move. */
+    @Test
+    public void gameRecordTest() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameRecordWriter writer = new GameRecordWriter(bytes);
+        Board board = new Board();
+        String[] moves = { "b1-b3", "h3-e3", "c1-c3", "a2-c2" };
+        writer.startGame(board);
+        for (String move : moves) {
+            Move m = Move.create(move, board);
+            writer.move(board, m);
+            board.makeMove(m);
+        }
+        writer.endGame(null);
+        int size = bytes.size();
+        assertEquals(GameRecordWriter.HEADER_SIZE + 1 + moves.length + 2,
+                     size);
+
+        board.initialize(NEAR_CONNECTED, BP);
+        Move win = Move.create("f5-c5", board);
+        writer.writeGame(board, new Move[] { win }, BP);
+        assertEquals(0, board.movesMade());
+        writer.close();
+        assertEquals(size + 1 + 17 + 1 + 2, bytes.size());
+
+        GameRecordReader reader = new GameRecordReader(
+            new ByteArrayInputStream(bytes.toByteArray()));
+        Board replay = new Board();
+        replay.makeMove(Move.create("b1-b3", replay));
+        assertTrue(reader.nextGame(replay));
+        assertEquals(new Board(), replay);
+        for (String move : moves) {
+            assertEquals(move, reader.nextMove(replay).toString());
+        }
+        assertNull(reader.nextMove(replay));
+        assertNull(reader.winner());
+        assertEquals(moves.length, replay.movesMade());
+
+        assertTrue(reader.nextGame(replay));
+        assertEquals(board, replay);
+        assertEquals(win, reader.nextMove(replay));
+        assertNull(reader.nextMove(replay));
+        assertEquals(BP, reader.winner());
+        assertEquals(BP, replay.winner());
+        assertFalse(reader.nextGame(replay));
+    }
+
+    /** Test that GameRecordReader reads streams appended to by several
+     *  GameRecordWriters, and rejects streams with unknown headers. */
+    @Test
+    public void gameRecordHeaderTest() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Board board = new Board();
+        Move[] moves = { Move.create("b1-b3", board) };
+        for (int k = 0; k < 2; k += 1) {
+            try (GameRecordWriter writer = new GameRecordWriter(bytes)) {
+                writer.writeGame(board, moves, null);
+            }
+        }
+        byte[] record = bytes.toByteArray();
+        GameRecordReader reader =
+            new GameRecordReader(new ByteArrayInputStream(record));
+        assertTrue(reader.nextGame(board));
+        assertTrue(reader.nextGame(board));
+        assertFalse(reader.nextGame(board));
+
+        for (int i : new int[] { 0, 3, GameRecordWriter.HEADER_SIZE - 1 }) {
+            byte[] bad = record.clone();
+            bad[i] += 1;
+            reader = new GameRecordReader(new ByteArrayInputStream(bad));
+            try {
+                reader.nextGame(board);
+                fail("bad header accepted");
+            } catch (IOException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    /** Test that GameServer plays a game of its own with each client, and
+     *  refuses commands that would allocate server resources or search
+     *  without bound. */
+    @Test
+    public void gameServerTest() throws Exception {
+        GameServer server = new GameServer(0, 2, g -> g.setSearchDepth(1));
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException excp) {
+                throw new AssertionError(excp);
+            }
+        });
+        serving.start();
+        try (Socket first = new Socket("localhost", server.port());
+             Socket second = new Socket("localhost", server.port())) {
+            OutputStream out = first.getOutputStream();
+            out.write("start\nb1-b3\nhash 100\nperft 9\ndepth 7\ntime 60\n"
+                      .getBytes());
+            second.getOutputStream().write("dump\nquit\ndump\n".getBytes());
+            out.write("dump\nquit\n".getBytes());
+            String reply = new String(first.getInputStream().readAllBytes());
+            assertTrue(reply.startsWith("W::"));
+            assertTrue(reply.contains("command not available: hash"));
+            assertTrue(reply.contains("command not available: perft"));
+            assertTrue(reply.contains("Invalid depth: 7"));
+            assertTrue(reply.contains("Invalid time limit: 60"));
+            assertTrue(reply.contains("    - - b b b b b - "));
+            String other = new String(second.getInputStream().readAllBytes());
+            assertEquals(new Board() + "\n", other);
+        } finally {
+            server.close();
+            serving.join();
+        }
+    }
+
+    /** Test that a game between automated players on a GameServer with
+     *  one worker does not keep another connection from being served. */
+    @Test
+    public void gameServerSharingTest() throws Exception {
+        GameServer server = new GameServer(0, 1, g -> g.setTimeLimit(1));
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException excp) {
+                throw new AssertionError(excp);
+            }
+        });
+        serving.start();
+        try (Socket first = new Socket("localhost", server.port());
+             Socket second = new Socket("localhost", server.port())) {
+            first.setSoTimeout(10_000);
+            second.setSoTimeout(10_000);
+            first.getOutputStream().write("auto black\nstart\n".getBytes());
+            assertTrue(first.getInputStream().read() >= 0);
+            second.getOutputStream().write("dump\nquit\n".getBytes());
+            String other = new String(second.getInputStream().readAllBytes());
+            assertEquals(new Board() + "\n", other);
+        } finally {
+            server.close();
+            serving.join();
+        }
+    }
+
+    /** Test that Histogram counts small values exactly and reports
+     *  percentiles of large ones to within 1/Histogram.SUB. */
+    @Test
+    public void histogramTest() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.percentile(0.5));
+        for (long v = 0; v < 2 * Histogram.SUB; v += 1) {
+            assertEquals(v, Histogram.highest(Histogram.bucket(v)));
+        }
+        for (long v = 1; v <= 1000; v += 1) {
+            histogram.record(v * 1_000_000);
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(1_000_000_000L, histogram.max());
+        assertEquals(500.5e6, histogram.mean(), 1e-6);
+        long median = histogram.percentile(0.5);
+        assertTrue(median >= 500_000_000L);
+        assertTrue(median <= 500_000_000L * (1 + 1.0 / Histogram.SUB));
+        assertEquals(histogram.max(), histogram.percentile(1.0));
+        long top = Histogram.highest(Histogram.bucket(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, top);
+    }
+
+    /** Test that automated moves are counted in SearchStatistics. */
+    @Test
+    public void searchStatisticsTest() {
+        Game game = new Game();
+        game.setSearchDepth(3);
+        MachinePlayer player = new MachinePlayer(BP, game);
+        player.makeMove();
+        SearchStatistics statistics = game.statistics();
+        assertEquals(1, statistics.moves());
+        assertEquals(1, statistics.searchedMoves());
+        assertEquals(3, statistics.depth().max());
+        assertTrue(statistics.nodes().total() > 0);
+        assertTrue(statistics.branchingFactor() > 1);
+        assertTrue(statistics.tableHitRate() >= 0
+                   && statistics.tableHitRate() <= 1);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        statistics.printJson(new PrintStream(bytes));
+        String json = bytes.toString();
+        assertTrue(json.startsWith("{\"moves\":1,\"searched\":1,"));
+        assertTrue(json.endsWith("}" + System.lineSeparator()));
+        SearchStatistics total = new SearchStatistics();
+        total.add(statistics);
+        total.add(statistics);
+        assertEquals(2, total.searchedMoves());
+        total.reset();
+        assertEquals(0, total.moves());
+    }
+
+    /** Test that a MachinePlayer that pondered the reply actually made
+     *  plays the move it found at once, and searches after any other reply
+     *  or a change of search depth. */
+    @Test
+    public void ponderTest() throws InterruptedException {
+        Game game = new Game();
+        game.setSearchDepth(2);
+        MachinePlayer white = new MachinePlayer(WP, game);
+        Board board = game.getBoard();
+        board.makeMove(Move.create("b1-b3", board));
+        board.makeMove(white.makeMove());
+        long entry = game.transpositionTable().probe(board.zobristKey());
+        Move guess = Move.fromIndex(TranspositionTable.move(entry), board);
+        assertTrue(board.isLegal(guess));
+
+        white.startPondering();
+        white.awaitPondering();
+        white.stopPondering();
+        board.makeMove(guess);
+        Move reply = white.makeMove();
+        assertTrue(board.isLegal(reply));
+        assertEquals(1, game.statistics().ponderedMoves());
+        assertEquals(1, game.statistics().searchedMoves());
+        assertEquals(2, game.statistics().moves());
+        board.makeMove(reply);
+
+        entry = game.transpositionTable().probe(board.zobristKey());
+        guess = Move.fromIndex(TranspositionTable.move(entry), board);
+        Iterator<Move> moves = board.legalMoves();
+        Move other = moves.next();
+        if (other.equals(guess)) {
+            other = moves.next();
+        }
+        white.startPondering();
+        white.awaitPondering();
+        white.stopPondering();
+        board.makeMove(other);
+        reply = white.makeMove();
+        assertTrue(board.isLegal(reply));
+        assertEquals(1, game.statistics().ponderedMoves());
+        assertEquals(2, game.statistics().searchedMoves());
+        board.makeMove(reply);
+
+        entry = game.transpositionTable().probe(board.zobristKey());
+        guess = Move.fromIndex(TranspositionTable.move(entry), board);
+        white.startPondering();
+        white.awaitPondering();
+        white.stopPondering();
+        game.setSearchDepth(3);
+        board.makeMove(guess);
+        assertTrue(board.isLegal(white.makeMove()));
+        assertEquals(1, game.statistics().ponderedMoves());
+        assertEquals(3, game.statistics().searchedMoves());
+    }
+
+    /** Test the splitting of commands into words and the parsing of
+     *  moves, including malformed ones. */
+    @Test
+    public void tokenizerTest() {
+        String[] names = { "#", "set", "dump" };
+        Tokenizer tokens = new Tokenizer();
+        tokens.reset("  SET\ta1\u000b b  extra words ");
+        assertEquals(3, tokens.count());
+        assertEquals("set", tokens.find(0, names));
+        assertEquals("a1", tokens.word(1));
+        assertEquals("b", tokens.word(2));
+        assertNull(tokens.find(1, names));
+        tokens.reset("#dump this");
+        assertEquals("#", tokens.find(0, names));
+        assertEquals("dump", tokens.word(1));
+        tokens.reset("dumped");
+        assertNull(tokens.find(0, names));
+        assertEquals("", tokens.word(1));
+        tokens.reset("   ");
+        assertEquals(0, tokens.count());
+        assertNull(tokens.find(0, names));
+
+        Board board = new Board();
+        assertEquals(Move.create(2, 1, 2, 3, board),
+                     Move.create("b1-b3", board));
+        assertEquals(Move.create(2, 1, 2, 3, board),
+                     Move.create(" b1-b3 and more", board));
+        assertNull(Move.create("b1-b3x", board));
+        assertNull(Move.create("b1-b9", board));
+        assertNull(Move.create("a9-a1", board));
+        assertNull(Move.create("b1b3", board));
+        assertNull(Move.create("b1-", board));
+        assertNull(Move.create("", board));
+        assertEquals(7, Board.col("g4"));
+        assertEquals(4, Board.row("g4"));
+        assertEquals(-1, Board.sq("i1", 0));
+    }
+
+    /** Test that a replayed script prints its output, errors included,
+     *  without prompts, and that automated players answer its moves. */
+    @Test
+    public void replayTest() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(output);
+        Game game =
+            new Game(new BufferedReader(
+                         new StringReader("# comment\nseed 5\ndepth 1\n"
+                                          + "start\nb1-b3\nb1-b9\n")),
+                     out, out);
+        game.replay();
+        out.flush();
+        String text = output.toString();
+        assertFalse(text.contains(">"));
+        assertTrue(text.startsWith("W::"));
+        assertTrue(text.contains("Error: invalid move: b1-b9"));
+        assertEquals(2, game.getBoard().movesMade());
+        assertTrue(game.quitting());
+    }
+
+    /** Test that returns to earlier positions are detected after moves,
+     *  retractions, copying and restoring. */
+    @Test
+    public void repetitionTest() {
+        Board board = new Board();
+        String[] cycle = { "b1-b3", "a2-c2", "b3-b1" };
+        for (String move : cycle) {
+            board.makeMove(Move.create(move, board));
+            assertFalse(board.repeated());
+        }
+        Move back = Move.create("c2-a2", board);
+        assertTrue(board.repeats(back));
+        assertFalse(board.repeats(Move.create("c2-c4", board)));
+
+        Board restored = new Board();
+        restored.restore(board);
+        assertEquals(0, restored.movesMade());
+        Board copy = new Board(board);
+        board.makeMove(back);
+        assertTrue(board.repeated());
+        board.retract();
+        assertFalse(board.repeated());
+        restored.makeMove(back);
+        assertTrue(restored.repeated());
+        copy.makeMove(back);
+        assertTrue(copy.repeated());
+        restored.restore(restored.snapshot());
+        assertFalse(restored.repeated());
+    }
+
+    /** Test that positions set up with many more pieces than a side
+     *  starts with, which have more legal moves than any position in a
+     *  real game, are handled by move generation, the endgame solver, the
+     *  search and game records. */
+    @Test
+    public void crowdedPositionTest() throws IOException {
+        Game game = new Game();
+        game.setSearchDepth(2);
+        Board board = game.getBoard();
+        for (int sq = 0; sq < Board.SQUARES; sq += 1) {
+            board.set(Board.col(sq), Board.row(sq), EMP);
+        }
+        for (String sq : ("g1 h1 c2 f2 c3 d3 e3 g3 b4 c4 e4 f4 g4 a5 b5 "
+                          + "g5 h5 a6 b6 f6 d7 g7 a8 e8").split(" ")) {
+            board.set(Board.col(sq), Board.row(sq), BP);
+        }
+        board.set(1, 1, WP);
+        board.set(8, 8, WP);
+
+        int[] buf = new int[Board.MAX_MOVES];
+        int count = board.generateMoves(buf);
+        assertEquals(97, count);
+        int iterated = 0;
+        for (Move move : board) {
+            iterated += 1;
+        }
+        assertEquals(count, iterated);
+
+        Move best = new MachinePlayer(BP, game).makeMove();
+        assertTrue(board.isLegal(best));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameRecordWriter writer = new GameRecordWriter(bytes);
+        Move last = Move.fromPacked(buf[count - 1]);
+        writer.startGame(board);
+        writer.move(board, last);
+        writer.endGame(null);
+        GameRecordReader reader =
+            new GameRecordReader(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        Board replay = new Board();
+        assertTrue(reader.nextGame(replay));
+        assertEquals(last, reader.nextMove(replay));
+    }
+
+    /** Test that search depths beyond those the Searcher's per-ply
+     *  buffers allow are refused. */
+    @Test
+    public void searchDepthLimitTest() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(output, true);
+        Game game = new Game(null, out, out);
+        game.setSearchDepth(Searcher.MAX_DEPTH);
+        assertEquals(Searcher.MAX_DEPTH, game.searchDepth());
+        try {
+            game.setSearchDepth(Searcher.MAX_DEPTH + 1);
+            fail("depth beyond Searcher.MAX_DEPTH accepted");
+        } catch (IllegalArgumentException excp) {
+            assertEquals(Searcher.MAX_DEPTH, game.searchDepth());
+        }
+        game.setSearchDepth(2);
+        game.receive("depth 100");
+        assertEquals(2, game.searchDepth());
+        assertTrue(output.toString().contains("Invalid depth: 100"));
+    }
+
+    /** Test that a move from an empty square, for which Move.create
+     *  gives null, is reported as an invalid move and not made. */
+    @Test
+    public void emptySourceTest() {
+        assertNull(Move.create("d4-d6", new Board()));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(output, true);
+        Game game = new Game(null, out, out);
+        game.receive("manual white");
+        game.receive("start");
+        game.receive("d4-d6");
+        assertTrue(output.toString().contains("invalid move: d4-d6"));
+        output.reset();
+        game.receive("d4");
+        assertTrue(output.toString().contains("invalid move: d4"));
+        assertEquals(0, game.getBoard().movesMade());
+    }
 }